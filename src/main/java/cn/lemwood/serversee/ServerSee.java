@@ -5,8 +5,11 @@ import cn.lemwood.serversee.api.JULHandler;
 import cn.lemwood.serversee.api.LogAppender;
 import cn.lemwood.serversee.auth.TokenManager;
 import cn.lemwood.serversee.database.DatabaseManager;
+import cn.lemwood.serversee.metrics.HardwareSnapshot;
 import cn.lemwood.serversee.metrics.SparkManager;
 import cn.lemwood.serversee.metrics.TickMonitor;
+import cn.lemwood.serversee.profiler.LagSpikeDetector;
+import cn.lemwood.serversee.profiler.SamplingProfiler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.config.Configuration;
@@ -24,6 +27,8 @@ public class ServerSee extends JavaPlugin {
     private LogAppender logAppender;
     private JULHandler julHandler;
     private TickMonitor tickMonitor;
+    private LagSpikeDetector lagSpikeDetector;
+    private SamplingProfiler profiler;
 
     @Override
     public void onEnable() {
@@ -40,16 +45,24 @@ public class ServerSee extends JavaPlugin {
         tickMonitor = new TickMonitor();
         tickMonitor.start(this);
 
+        // 初始化卡顿检测 (onEnable 运行在主线程)
+        if (getConfig().getBoolean("lag-spike.enabled", true)) {
+            lagSpikeDetector = new LagSpikeDetector(tickMonitor, Thread.currentThread());
+            lagSpikeDetector.start();
+        }
+        profiler = new SamplingProfiler(Thread.currentThread());
+
         // 检查更新
         new UpdateChecker(this).check();
 
         // 延迟初始化 API 服务器
         getServer().getScheduler().runTask(this, () -> {
             sparkManager = new SparkManager(tickMonitor);
+            sparkManager.start(this, getConfig().getLong("hardware-sample-interval-ms", 1000));
             
             // 启动 API 服务器
             int port = getConfig().getInt("api-port", 8080);
-            apiServer = new ApiServer(port, sparkManager, databaseManager, tokenManager);
+            apiServer = new ApiServer(port, sparkManager, databaseManager, tokenManager, lagSpikeDetector, profiler);
             apiServer.start();
 
             // 启动异步采集任务
@@ -64,6 +77,14 @@ public class ServerSee extends JavaPlugin {
         getLogger().info("ServerSee 插件已加载，等待初始化...");
     }
 
+    @Override
+    public void reloadConfig() {
+        super.reloadConfig();
+        if (apiServer != null) {
+            apiServer.invalidateResponseCache();
+        }
+    }
+
     private void setupLogCapture() {
         if (apiServer == null) return;
         
@@ -79,14 +100,17 @@ public class ServerSee extends JavaPlugin {
             config.addAppender(logAppender);
             config.getRootLogger().addAppender(logAppender, null, null);
             ctx.updateLoggers();
+            apiServer.setLog4jCaptureActive(true);
             getLogger().info("已启用 Log4j2 日志捕获。");
+            // 服务端会把 JUL 转发到 Log4j，无需再安装 JUL 处理器
+            return;
         } catch (NoClassDefFoundError | ClassNotFoundException e) {
             getLogger().info("未检测到 Log4j2，尝试使用 JUL 捕获日志。");
         } catch (Exception e) {
             getLogger().warning("设置 Log4j2 捕获时出错: " + e.getMessage());
         }
 
-        // 方案 2: java.util.logging (作为备份或旧版本核心)
+        // 方案 2: java.util.logging (仅在 Log4j2 不可用时作为备份)
         try {
             julHandler = new JULHandler(apiServer);
             Logger rootLogger = Logger.getLogger("");
@@ -101,13 +125,14 @@ public class ServerSee extends JavaPlugin {
         int interval = getConfig().getInt("collection-interval", 60);
         getServer().getScheduler().runTaskTimerAsynchronously(this, () -> {
             if (sparkManager != null) {
+                HardwareSnapshot hardware = sparkManager.getHardwareSnapshot();
                 databaseManager.saveMetrics(
                         sparkManager.getTps5s(),
                         sparkManager.getMspt(),
-                        sparkManager.getCpuProcess(),
-                        sparkManager.getCpuSystem(),
-                        sparkManager.getMemoryUsed(),
-                        sparkManager.getMemoryMax()
+                        hardware.getCpuProcess(),
+                        hardware.getCpuSystem(),
+                        hardware.getMemoryUsed(),
+                        hardware.getMemoryMax()
                 );
             }
         }, 20L * interval, 20L * interval);
@@ -134,6 +159,16 @@ public class ServerSee extends JavaPlugin {
             } catch (Exception ignored) {}
         }
         
+        if (lagSpikeDetector != null) {
+            lagSpikeDetector.stop();
+        }
+        if (profiler != null) {
+            profiler.stop();
+        }
+        if (sparkManager != null) {
+            sparkManager.stop();
+        }
+
         if (apiServer != null) {
             try {
                 apiServer.stop(1000);
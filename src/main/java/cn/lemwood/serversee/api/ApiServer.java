@@ -1,107 +1,370 @@
 package cn.lemwood.serversee.api;
 
 import cn.lemwood.serversee.ServerSee;
+import cn.lemwood.serversee.auth.NonceCache;
+import cn.lemwood.serversee.auth.SessionKey;
 import cn.lemwood.serversee.auth.TokenManager;
 import cn.lemwood.serversee.database.DatabaseManager;
+import cn.lemwood.serversee.database.HistoryConsumer;
+import cn.lemwood.serversee.database.HistorySeries;
+import cn.lemwood.serversee.metrics.HardwareSnapshot;
 import cn.lemwood.serversee.metrics.SparkManager;
+import cn.lemwood.serversee.profiler.LagSpike;
+import cn.lemwood.serversee.profiler.LagSpikeDetector;
+import cn.lemwood.serversee.profiler.SamplingProfiler;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.event.HandlerList;
 import org.bukkit.plugin.Plugin;
 import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
 import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
 import org.java_websocket.server.WebSocketServer;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.zip.GZIPOutputStream;
 
 public class ApiServer extends WebSocketServer {
     private final SparkManager sparkManager;
     private final DatabaseManager databaseManager;
     private final TokenManager tokenManager;
+    private final NonceCache nonceCache;
+    private final long sessionTtlMs;
+    private final Set<String> sensitiveActions;
+    private final LagSpikeDetector lagSpikeDetector;
+    private final SamplingProfiler profiler;
     private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
     
-    private final Set<WebSocket> authenticatedSessions = ConcurrentHashMap.newKeySet();
-    
     // 缓存
     private String cachedIconBase64 = null;
     private long lastIconUpdate = 0;
     private static final long ICON_CACHE_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final Path LATEST_LOG = Paths.get("logs", "latest.log");
+    private static final int MAX_LOG_HISTORY_LINES = 5000;
+    static final String CACHE_STATUS = "status";
+    static final String CACHE_WHITELIST = "admin/whitelist";
+    private static final int MAX_LOG_SEARCH_RESULTS = 1000;
+    private static final int BINARY_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_BATCH_REQUESTS = 32;
+    // 签名请求的时间戳允许的误差 (秒)，nonce 记录按同一窗口过期
+    private static final long SIGNATURE_WINDOW_SECONDS = 60;
+    private static final List<String> DEFAULT_SENSITIVE_ACTIONS = List.of("admin/command", "admin/restart", "admin/shutdown",
+            "admin/whitelist/toggle", "admin/whitelist/add", "admin/whitelist/remove");
     
-    // 简易速率限制
-    private final Map<String, Integer> rateLimitMap = new ConcurrentHashMap<>();
-    private final int maxRequestsPerMinute;
+    // 速率限制 (令牌桶)
+    private final RateLimiter connectionLimiter;
+    private final RateLimiter ipLimiter;
+    private final RateLimiter sessionLimiter;
+    private final Map<String, Integer> actionCosts = new HashMap<>();
+    private final int historyChunkRows;
+    private final MetricsBroadcaster metricsBroadcaster;
+    private final LogBroadcaster logBroadcaster;
+    private final LogSearcher logSearcher;
+    private final RequestDispatcher dispatcher;
+    private final ResponseCache responseCache;
+    private final CacheInvalidationListener cacheListener;
+    private final MainThreadBus mainThreadBus;
+    private final ProfileResolver profileResolver;
 
-    public ApiServer(int port, SparkManager sparkManager, DatabaseManager databaseManager, TokenManager tokenManager) {
-        super(new InetSocketAddress(port));
+    public ApiServer(int port, SparkManager sparkManager, DatabaseManager databaseManager, TokenManager tokenManager, LagSpikeDetector lagSpikeDetector, SamplingProfiler profiler) {
+        super(new InetSocketAddress(port), createDrafts());
         this.sparkManager = sparkManager;
         this.databaseManager = databaseManager;
         this.tokenManager = tokenManager;
-        this.maxRequestsPerMinute = ServerSee.getInstance().getConfig().getInt("api-rate-limit", 600);
+        this.nonceCache = new NonceCache(SIGNATURE_WINDOW_SECONDS, ServerSee.getInstance().getConfig().getInt("auth.nonce-cache-size", 100000));
+        this.sessionTtlMs = Math.max(10, ServerSee.getInstance().getConfig().getLong("auth.session-ttl-seconds", 900)) * 1000;
+        this.sensitiveActions = ServerSee.getInstance().getConfig().contains("auth.sensitive-actions")
+                ? new LinkedHashSet<>(ServerSee.getInstance().getConfig().getStringList("auth.sensitive-actions"))
+                : new LinkedHashSet<>(DEFAULT_SENSITIVE_ACTIONS);
+        this.lagSpikeDetector = lagSpikeDetector;
+        this.profiler = profiler;
+        int maxConnectionsPerMinute = ServerSee.getInstance().getConfig().getInt("api-rate-limit", 600);
+        this.connectionLimiter = new RateLimiter(maxConnectionsPerMinute, maxConnectionsPerMinute / 60.0);
+        this.ipLimiter = new RateLimiter(ServerSee.getInstance().getConfig().getInt("rate-limit.ip.capacity", 200),
+                ServerSee.getInstance().getConfig().getDouble("rate-limit.ip.refill-per-second", 50));
+        this.sessionLimiter = new RateLimiter(ServerSee.getInstance().getConfig().getInt("rate-limit.session.capacity", 60),
+                ServerSee.getInstance().getConfig().getDouble("rate-limit.session.refill-per-second", 20));
+        ConfigurationSection costs = ServerSee.getInstance().getConfig().getConfigurationSection("rate-limit.action-costs");
+        if (costs != null) {
+            for (String costAction : costs.getKeys(false)) {
+                actionCosts.put(costAction, Math.max(1, costs.getInt(costAction)));
+            }
+        }
+        this.historyChunkRows = ServerSee.getInstance().getConfig().getInt("history-chunk-rows", 500);
+        this.metricsBroadcaster = new MetricsBroadcaster(this, this::buildMetricsSnapshot,
+                (format, snapshot) -> encodePush(format, "metrics", snapshot),
+                ServerSee.getInstance().getConfig().getLong("metrics-push-min-interval", 500));
+        this.logBroadcaster = new LogBroadcaster(this);
+        this.logBroadcaster.seed(LATEST_LOG);
+        this.logSearcher = new LogSearcher(LATEST_LOG.getParent());
+        this.dispatcher = new RequestDispatcher(this::onRequestTimeout);
+        this.responseCache = new ResponseCache(ServerSee.getInstance().getConfig().getLong("response-cache-ttl", 5000));
+        this.cacheListener = new CacheInvalidationListener(responseCache);
+        Bukkit.getPluginManager().registerEvents(cacheListener, ServerSee.getInstance());
+        this.mainThreadBus = new MainThreadBus(ServerSee.getInstance().getConfig().getDouble("main-thread.tick-budget-ms", 2.0));
+        this.profileResolver = new ProfileResolver(mainThreadBus);
+        Bukkit.getPluginManager().registerEvents(profileResolver, ServerSee.getInstance());
         
-        // 每分钟清理一次速率限制
-        Bukkit.getScheduler().runTaskTimerAsynchronously(ServerSee.getInstance(), rateLimitMap::clear, 1200L, 1200L);
+        // 每分钟移除一次已经补满的令牌桶
+        Bukkit.getScheduler().runTaskTimerAsynchronously(ServerSee.getInstance(), () -> {
+            connectionLimiter.evictIdle();
+            ipLimiter.evictIdle();
+            nonceCache.sweep();
+        }, 1200L, 1200L);
+        // 每 20 秒检查一次会话密钥是否过期
+        Bukkit.getScheduler().runTaskTimerAsynchronously(ServerSee.getInstance(), this::sweepSessionKeys, 400L, 400L);
+    }
+
+    /**
+     * 声明支持的子协议，并按配置启用 permessage-deflate 压缩 (仅在客户端也支持时生效)
+     */
+    private static List<Draft> createDrafts() {
+        List<IProtocol> protocols = new ArrayList<>();
+        for (WireFormat format : WireFormat.values()) {
+            protocols.add(new Protocol(format.getSubprotocol()));
+        }
+        // 空协议匹配未声明子协议的客户端
+        protocols.add(new Protocol(""));
+        List<IExtension> extensions = new ArrayList<>();
+        if (ServerSee.getInstance().getConfig().getBoolean("websocket.permessage-deflate", true)) {
+            PerMessageDeflateExtension deflate = new PerMessageDeflateExtension();
+            deflate.setThreshold(ServerSee.getInstance().getConfig().getInt("websocket.deflate-threshold", 1024));
+            extensions.add(deflate);
+        }
+        return Collections.singletonList(new Draft_6455(extensions, protocols));
     }
 
     @Override
     public void onOpen(WebSocket conn, ClientHandshake handshake) {
         String ip = conn.getRemoteSocketAddress().getAddress().getHostAddress();
-        int requests = rateLimitMap.getOrDefault(ip, 0);
-        if (requests >= maxRequestsPerMinute) {
+        if (connectionLimiter.tryAcquire(connectionLimiter.bucket(ip), 1) != 0) {
             ServerSee.getInstance().getLogger().warning("IP " + ip + " 触发速率限制 (429 Too Many Requests)，连接已关闭。");
             conn.close(429, "Too Many Requests");
             return;
         }
-        rateLimitMap.put(ip, requests + 1);
-        ServerSee.getInstance().getLogger().info("新的 WS 连接: " + ip + " (本分钟第 " + (requests + 1) + " 次)");
+        String subprotocol = conn.getProtocol() != null ? conn.getProtocol().getProvidedProtocol() : null;
+        conn.setAttachment(new ClientSession(WireFormat.negotiate(subprotocol, handshake.getResourceDescriptor()),
+                ip, sessionLimiter.newBucket()));
+        ServerSee.getInstance().getLogger().info("新的 WS 连接: " + ip);
     }
 
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-        authenticatedSessions.remove(conn);
+        metricsBroadcaster.unsubscribe(conn);
+        logBroadcaster.unsubscribe(conn);
     }
 
     @Override
     public void onMessage(WebSocket conn, String message) {
+        // 解析之前先按基础消耗限流，消息洪泛时不做任何解析与验签
+        ClientSession session = ClientSession.of(conn);
+        long wait = acquireTokens(session, 1);
+        if (wait != 0) {
+            if (session.allowRateLimitNotice()) {
+                sendResponse(conn, new RequestHandle(null), false, "Too Many Requests", rateLimitData(wait));
+            }
+            return;
+        }
+
+        JsonObject request;
+        String action;
+        RequestHandle handle;
         try {
-            JsonObject request = JsonParser.parseString(message).getAsJsonObject();
-            String action = request.has("action") ? request.get("action").getAsString() : "";
-            String requestId = request.has("id") ? request.get("id").getAsString() : null;
+            request = JsonParser.parseString(message).getAsJsonObject();
+            action = request.has("action") ? request.get("action").getAsString() : "";
+            handle = new RequestHandle(request.has("id") ? request.get("id").getAsString() : null);
+        } catch (Exception e) {
+            sendResponse(conn, new RequestHandle(null), false, "Invalid Request: " + e.getMessage(), null);
+            return;
+        }
 
-            // 处理心跳
-            if ("ping".equals(action)) {
-                sendResponse(conn, requestId, true, "pong", null);
+        // batch 的令牌消耗与验证要求由其中的子请求决定
+        int cost;
+        boolean isAuthRequired;
+        boolean sensitive;
+        if ("batch".equals(action)) {
+            // batch 的 id 用于标识汇总响应与流式的每一项，也是缺省子请求 id 的前缀
+            if (handle.getId() == null) {
+                sendResponse(conn, handle, false, "Invalid Request: Missing batch id", null);
+                return;
+            }
+            List<JsonObject> subRequests;
+            try {
+                subRequests = parseBatch(request.getAsJsonObject("data"));
+            } catch (RuntimeException e) {
+                sendResponse(conn, handle, false, "Invalid Request: " + e.getMessage(), null);
                 return;
             }
+            cost = 0;
+            isAuthRequired = false;
+            sensitive = false;
+            for (JsonObject sub : subRequests) {
+                String subAction = sub.has("action") ? sub.get("action").getAsString() : "";
+                cost += actionCosts.getOrDefault(subAction, 1);
+                isAuthRequired |= requiresAuth(subAction);
+                sensitive |= sensitiveActions.contains(subAction);
+            }
+        } else {
+            cost = actionCosts.getOrDefault(action, 1);
+            isAuthRequired = requiresAuth(action);
+            sensitive = sensitiveActions.contains(action);
+        }
 
-            // 鉴权检查
-            boolean isAuthRequired = action.startsWith("admin/") || "metrics".equals(action) || "history".equals(action);
-            if (isAuthRequired) {
-                if (!validateAuth(request)) {
-                    sendResponse(conn, requestId, false, "Unauthorized (Signature mismatch or expired)", null);
-                    return;
+        // 消耗较大的 action 再扣除额外的令牌
+        if (cost > 1 && (wait = acquireTokens(session, cost - 1)) != 0) {
+            sendResponse(conn, handle, false, "Too Many Requests", rateLimitData(wait));
+            return;
+        }
+
+        // 处理心跳
+        if ("ping".equals(action)) {
+            sendResponse(conn, handle, true, "pong", null);
+            return;
+        }
+
+        // 完成 auth 握手的连接不带签名时按会话校验，不需要 HMAC 或只需一次会话密钥 HMAC。
+        // 在 I/O 线程中按消息顺序执行，保证 seq 严格递增的检查不受工作线程调度顺序影响
+        SessionKey sessionKey = session.getSessionKey();
+        boolean sessionAuthenticated = isAuthRequired && sessionKey != null && !"auth".equals(action)
+                && !request.has("signature") && !request.has("token");
+        if (sessionAuthenticated && !checkSession(sessionKey, action, sensitive, request, message)) {
+            sendResponse(conn, handle, false, "Unauthorized (Session expired or invalid)", Map.of("reauth", true));
+            return;
+        }
+
+        // 鉴权与处理都在工作线程中执行，避免阻塞 I/O 线程
+        boolean needsSignature = isAuthRequired && !sessionAuthenticated;
+        boolean accepted = dispatcher.dispatch(conn, action, handle, () -> {
+            try {
+                if (needsSignature) {
+                    if (!validateAuth(request, message)) {
+                        sendResponse(conn, handle, false, "Unauthorized (Signature mismatch or expired)", null);
+                        return;
+                    }
                 }
-                authenticatedSessions.add(conn);
+
+                handleAction(conn, action, handle, request.getAsJsonObject("data"));
+            } catch (Exception e) {
+                sendResponse(conn, handle, false, "Invalid Request: " + e.getMessage(), null);
             }
+        });
+        if (!accepted) {
+            sendResponse(conn, handle, false, "Server busy, please retry later", Map.of("busy", true));
+        }
+    }
 
-            handleAction(conn, action, requestId, request.getAsJsonObject("data"), null);
-        } catch (Exception e) {
-            sendResponse(conn, null, false, "Invalid Request: " + e.getMessage(), null);
+    private static boolean requiresAuth(String action) {
+        return action.startsWith("admin/") || "metrics".equals(action) || "history".equals(action) || "auth".equals(action);
+    }
+
+    /**
+     * 校验会话: 会话未过期即可执行一般操作，敏感操作还需校验 seq 与会话密钥签名
+     */
+    private boolean checkSession(SessionKey sessionKey, String action, boolean sensitive, JsonObject request, String message) {
+        if (sessionKey.isExpired(System.currentTimeMillis())) return false;
+        if (!sensitive) return true;
+        if (!request.has("seq") || !request.has("mac")) return false;
+        try {
+            long seq = request.get("seq").getAsLong();
+            String mac = request.get("mac").getAsString();
+            String prefix = seq + action;
+            return verifyWithData(request, message, data -> sessionKey.verify(seq, mac, prefix, data));
+        } catch (RuntimeException e) {
+            return false;
         }
     }
 
-    private boolean validateAuth(JsonObject request) {
+    /**
+     * 用消息中 data 字段的原文验证签名；失败且原文与规范化的 JSON 不同 (如消息经过格式化) 时再用后者验证一次。
+     * 原文只有在解析结果与实际执行的 data 相同时才参与验证，签名覆盖的必须是将被执行的内容
+     */
+    private boolean verifyWithData(JsonObject request, String message, Predicate<String> verifier) {
+        String dataJson = JsonSlicer.valueOf(message, "data");
+        if (dataJson == null) {
+            if (!request.has("data")) dataJson = "";
+        } else if (!sameJson(dataJson, request.get("data"))) {
+            dataJson = null;
+        }
+        if (dataJson != null && verifier.test(dataJson)) return true;
+        if (!request.has("data")) return false;
+        String canonical = gson.toJson(request.get("data"));
+        return !canonical.equals(dataJson) && verifier.test(canonical);
+    }
+
+    private static boolean sameJson(String json, JsonElement element) {
+        try {
+            return JsonParser.parseString(json).equals(element);
+        } catch (JsonParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 从连接与 IP 的令牌桶中扣除令牌，两个桶都足够时才扣除，被拒绝的请求不消耗任何一方的令牌
+     * @return 0 表示通过，否则为建议等待的纳秒数
+     */
+    private long acquireTokens(ClientSession session, int cost) {
+        RateLimiter.Bucket bucket = session.getRateBucket();
+        if (bucket == null) return 0;
+        RateLimiter.Bucket ipBucket = ipLimiter.bucket(session.getAddress());
+        long wait = Math.max(sessionLimiter.waitFor(bucket, cost), ipLimiter.waitFor(ipBucket, cost));
+        if (wait != 0) return wait;
+        wait = sessionLimiter.tryAcquire(bucket, cost);
+        if (wait != 0) return wait;
+        // 检查之后同一 IP 的其他连接可能已取走令牌，此时归还本连接的令牌
+        wait = ipLimiter.tryAcquire(ipBucket, cost);
+        if (wait != 0) sessionLimiter.refund(bucket, cost);
+        return wait;
+    }
+
+    private static Map<String, Object> rateLimitData(long waitNanos) {
+        return Map.of("rate_limited", true, "retry_after_ms", Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+    }
+
+    private void onRequestTimeout(WebSocket conn, RequestHandle handle, String action) {
+        ServerSee.getInstance().getLogger().warning("请求处理超时: " + action);
+        if (conn.isOpen()) {
+            writeResponse(conn, handle, false, "Request timed out", Map.of("timeout", true));
+        }
+    }
+
+    private boolean validateAuth(JsonObject request, String message) {
         // 支持两种模式：旧的明文 Token (兼容) 和新的 HMAC 签名
         if (request.has("token")) {
             return tokenManager.validate(request.get("token").getAsString());
@@ -115,70 +378,120 @@ public class ApiServer extends WebSocketServer {
         long timestamp = request.get("timestamp").getAsLong();
         String nonce = request.get("nonce").getAsString();
         String action = request.get("action").getAsString();
-        String dataJson = request.has("data") ? gson.toJson(request.get("data")) : "";
 
         // 1. 校验时间戳 (允许 60 秒误差)
         long now = System.currentTimeMillis() / 1000;
-        if (Math.abs(now - timestamp) > 60) {
+        if (Math.abs(now - timestamp) > SIGNATURE_WINDOW_SECONDS) {
             ServerSee.getInstance().getLogger().warning("请求已过期: offset=" + (now - timestamp) + "s, req=" + timestamp + ", now=" + now);
             return false;
         }
 
-        // 2. 构造待签名字符串: action + timestamp + nonce + data_json
-        String dataToSign = action + timestamp + nonce + dataJson;
+        // 2. 待签名字符串: action + timestamp + nonce + data_json，data_json 直接取消息中的原文
+        String prefix = action + timestamp + nonce;
 
         // 3. 验证签名
-        boolean valid = tokenManager.validateSignature(signature, dataToSign);
+        boolean valid = verifyWithData(request, message, data -> tokenManager.validateSignature(signature, prefix, data));
         if (!valid) {
-            ServerSee.getInstance().getLogger().warning("签名验证失败!");
-            ServerSee.getInstance().getLogger().warning("待签名字符串: [" + dataToSign + "]");
-            ServerSee.getInstance().getLogger().warning("收到签名: " + signature);
+            ServerSee.getInstance().getLogger().warning("签名验证失败: action=" + action);
+            return false;
+        }
+
+        // 4. 签名有效后才记录 nonce，未通过验证的请求无法占用记录空间
+        NonceCache.Result replay = nonceCache.record(nonce, timestamp);
+        if (replay == NonceCache.Result.REPLAYED) {
+            ServerSee.getInstance().getLogger().warning("拒绝重放的请求: action=" + action);
+            return false;
+        }
+        if (replay == NonceCache.Result.FULL) {
+            ServerSee.getInstance().getLogger().warning("nonce 记录已满，拒绝请求: action=" + action);
+            return false;
         }
-        return valid;
+        return true;
     }
 
-    private void handleAction(WebSocket conn, String action, String requestId, JsonObject data, String token) {
+    private void handleAction(WebSocket conn, String action, RequestHandle handle, JsonObject data) {
         switch (action) {
+            case "auth":
+                handleAuth(conn, handle);
+                break;
+            case "batch":
+                handleBatch(conn, handle, data);
+                break;
             case "status":
-                handleStatus(conn, requestId);
+                handleStatus(conn, handle);
                 break;
             case "metrics":
-                handleMetrics(conn, requestId);
+                handleMetrics(conn, handle);
                 break;
             case "history":
-                handleHistory(conn, requestId, data);
+                handleHistory(conn, handle, data);
+                break;
+            case "admin/metrics/subscribe":
+                handleMetricsSubscribe(conn, handle, data);
+                break;
+            case "admin/metrics/unsubscribe":
+                handleMetricsUnsubscribe(conn, handle);
                 break;
             case "admin/command":
-                handleCommand(conn, requestId, data, token);
+                handleCommand(conn, handle, data);
                 break;
             case "admin/restart":
-                handleRestart(conn, requestId);
+                handleRestart(conn, handle);
                 break;
             case "admin/shutdown":
-                handleShutdown(conn, requestId);
+                handleShutdown(conn, handle);
                 break;
             case "admin/whitelist":
-                handleWhitelist(conn, requestId);
+                handleWhitelist(conn, handle);
                 break;
             case "admin/whitelist/toggle":
-                handleWhitelistToggle(conn, requestId, data);
+                handleWhitelistToggle(conn, handle, data);
                 break;
             case "admin/whitelist/add":
-                handleWhitelistAdd(conn, requestId, data);
+                handleWhitelistAdd(conn, handle, data);
                 break;
             case "admin/whitelist/remove":
-                handleWhitelistRemove(conn, requestId, data);
+                handleWhitelistRemove(conn, handle, data);
                 break;
             case "admin/logs/subscribe":
-                handleLogsSubscribe(conn, requestId);
+                handleLogsSubscribe(conn, handle, data);
+                break;
+            case "admin/logs/history":
+                handleLogsHistory(conn, handle, data);
+                break;
+            case "admin/logs/search":
+                handleLogsSearch(conn, handle, data);
+                break;
+            case "admin/logs/unsubscribe":
+                logBroadcaster.unsubscribe(conn);
+                sendResponse(conn, handle, true, "Unsubscribed from logs", null);
+                break;
+            case "admin/cache":
+                handleCacheStats(conn, handle);
+                break;
+            case "admin/spikes":
+                handleSpikes(conn, handle, data);
+                break;
+            case "admin/profiler/start":
+                handleProfilerStart(conn, handle, data);
+                break;
+            case "admin/profiler/stop":
+                handleProfilerStop(conn, handle);
+                break;
+            case "admin/profiler/fetch":
+                handleProfilerFetch(conn, handle);
                 break;
             default:
-                sendResponse(conn, requestId, false, "Unknown action: " + action, null);
+                sendResponse(conn, handle, false, "Unknown action: " + action, null);
                 break;
         }
     }
 
-    private void handleStatus(WebSocket conn, String requestId) {
+    private void handleStatus(WebSocket conn, RequestHandle handle) {
+        sendCachedResponse(conn, handle, CACHE_STATUS, this::buildStatus);
+    }
+
+    private Map<String, Object> buildStatus() {
         Map<String, Object> status = new HashMap<>();
         status.put("online", true);
         status.put("motd", Bukkit.getMotd());
@@ -201,37 +514,144 @@ public class ApiServer extends WebSocketServer {
             }
             status.put("plugins", plugins);
         }
-        sendResponse(conn, requestId, true, null, status);
+        return status;
+    }
+
+    private void handleMetrics(WebSocket conn, RequestHandle handle) {
+        sendResponse(conn, handle, true, null, buildMetricsSnapshot());
+    }
+
+    private void handleMetricsSubscribe(WebSocket conn, RequestHandle handle, JsonObject data) {
+        long interval = 1000;
+        if (data != null && data.has("interval")) {
+            interval = data.get("interval").getAsLong();
+        }
+        long effective = metricsBroadcaster.subscribe(conn, interval);
+        sendResponse(conn, handle, true, "Subscribed to metrics", Map.of("interval", effective));
     }
 
-    private void handleMetrics(WebSocket conn, String requestId) {
+    private void handleMetricsUnsubscribe(WebSocket conn, RequestHandle handle) {
+        boolean removed = metricsBroadcaster.unsubscribe(conn);
+        sendResponse(conn, handle, removed, removed ? "Unsubscribed from metrics" : "Not subscribed", null);
+    }
+
+    private Map<String, Object> buildMetricsSnapshot() {
         Map<String, Object> metrics = new HashMap<>();
         metrics.put("tps_5s", sparkManager.getTps5s());
         metrics.put("tps_1m", sparkManager.getTps1m());
         metrics.put("mspt", sparkManager.getMspt());
-        metrics.put("cpu_process", sparkManager.getCpuProcess());
-        metrics.put("cpu_system", sparkManager.getCpuSystem());
-        metrics.put("mem_used", sparkManager.getMemoryUsed());
-        metrics.put("mem_total", sparkManager.getMemoryTotal());
-        metrics.put("mem_max", sparkManager.getMemoryMax());
-        metrics.put("host_mem_used", sparkManager.getHostMemoryUsed());
-        metrics.put("host_mem_total", sparkManager.getHostMemoryTotal());
-        metrics.put("disk_used", sparkManager.getDiskUsed());
-        metrics.put("disk_total", sparkManager.getDiskTotal());
-        sendResponse(conn, requestId, true, null, metrics);
-    }
-
-    private void handleHistory(WebSocket conn, String requestId, JsonObject data) {
-        int limit = 60;
-        if (data != null && data.has("limit")) {
-            limit = data.get("limit").getAsInt();
+        metrics.put("mspt_stats", sparkManager.getTickStats());
+        metrics.put("tick_timing", sparkManager.getTickTimingMode());
+        // 所有硬件指标取自同一次采样
+        HardwareSnapshot hardware = sparkManager.getHardwareSnapshot();
+        metrics.put("cpu_process", hardware.getCpuProcess());
+        metrics.put("cpu_system", hardware.getCpuSystem());
+        metrics.put("mem_used", hardware.getMemoryUsed());
+        metrics.put("mem_total", hardware.getMemoryTotal());
+        metrics.put("mem_max", hardware.getMemoryMax());
+        metrics.put("host_mem_used", hardware.getHostMemoryUsed());
+        metrics.put("host_mem_total", hardware.getHostMemoryTotal());
+        metrics.put("disk_used", hardware.getDiskUsed());
+        metrics.put("disk_total", hardware.getDiskTotal());
+        return metrics;
+    }
+
+    private void handleHistory(WebSocket conn, RequestHandle handle, JsonObject data) {
+        boolean stream = data != null && data.has("stream") && data.get("stream").getAsBoolean();
+        try {
+            if (data != null && data.has("from")) {
+                // 按时间范围查询时由数据库自动选择原始数据或降采样层级
+                long from = data.get("from").getAsLong();
+                long to = data.has("to") ? data.get("to").getAsLong() : System.currentTimeMillis();
+                if (to < from) {
+                    sendResponse(conn, handle, false, "Invalid time range", null);
+                    return;
+                }
+                List<String> fields = new ArrayList<>();
+                if (data.has("fields")) {
+                    data.getAsJsonArray("fields").forEach(e -> fields.add(e.getAsString()));
+                }
+                long bucket = data.has("bucket") ? data.get("bucket").getAsLong() : 0;
+                String agg = data.has("agg") ? data.get("agg").getAsString() : "avg";
+                if (stream) {
+                    HistoryChunkWriter writer = new HistoryChunkWriter(conn, ClientSession.formatOf(conn), handle.getId(), historyChunkRows);
+                    databaseManager.streamHistory(from, to, fields, bucket, agg, writer);
+                    finishHistoryStream(conn, handle, writer);
+                } else {
+                    HistorySeries series = databaseManager.queryHistory(from, to, fields, bucket, agg);
+                    FrameBuffer frame = FrameBuffer.create(ClientSession.formatOf(conn));
+                    JsonWriter out = beginResponse(frame, handle);
+                    series.write(out);
+                    out.endObject();
+                    if (dispatcher.beginResponse(handle)) {
+                        deliverResponse(conn, handle, frame);
+                    }
+                }
+                return;
+            }
+
+            int limit = 60;
+            if (data != null && data.has("limit")) {
+                limit = data.get("limit").getAsInt();
+            }
+            if (stream) {
+                HistoryChunkWriter writer = new HistoryChunkWriter(conn, ClientSession.formatOf(conn), handle.getId(), historyChunkRows);
+                databaseManager.streamRecentMetrics(limit, writer);
+                finishHistoryStream(conn, handle, writer);
+                return;
+            }
+            // 直接从游标写出 JSON，不经过中间的 Map 与 JsonTree
+            FrameBuffer frame = FrameBuffer.create(ClientSession.formatOf(conn));
+            JsonWriter out = beginResponse(frame, handle);
+            out.beginArray();
+            databaseManager.streamRecentMetrics(limit, new HistoryConsumer() {
+                private List<String> fields;
+
+                @Override
+                public void begin(String tier, long bucket, String agg, List<String> fields) {
+                    this.fields = fields;
+                }
+
+                @Override
+                public void row(long timestamp, double[] values) throws IOException {
+                    out.beginObject();
+                    out.name("timestamp").value(timestamp);
+                    for (int i = 0; i < values.length; i++) {
+                        out.name(fields.get(i)).value(values[i]);
+                    }
+                    out.endObject();
+                }
+            });
+            out.endArray();
+            out.endObject();
+            if (dispatcher.beginResponse(handle)) {
+                deliverResponse(conn, handle, frame);
+            }
+        } catch (IllegalArgumentException e) {
+            sendResponse(conn, handle, false, e.getMessage(), null);
+        } catch (SQLException e) {
+            // 流式返回时已发送的块不完整，以失败响应结束
+            ServerSee.getInstance().getLogger().warning("查询历史数据失败: " + e.getMessage());
+            sendResponse(conn, handle, false, "Failed to query history: " + e.getMessage(), null);
+        } catch (IOException e) {
+            ServerSee.getInstance().getLogger().warning("发送历史数据失败: " + e.getMessage());
         }
-        sendResponse(conn, requestId, true, null, databaseManager.getRecentMetrics(limit));
     }
 
-    private void handleCommand(WebSocket conn, String requestId, JsonObject data, String token) {
+    private void finishHistoryStream(WebSocket conn, RequestHandle handle, HistoryChunkWriter writer) throws IOException {
+        writer.finish();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("tier", writer.getTier());
+        result.put("bucket", writer.getBucket());
+        result.put("agg", writer.getAgg());
+        result.put("rows", writer.getRows());
+        result.put("chunks", writer.getChunks());
+        sendResponse(conn, handle, true, null, result);
+    }
+
+    private void handleCommand(WebSocket conn, RequestHandle handle, JsonObject data) {
         if (data == null || !data.has("command")) {
-            sendResponse(conn, requestId, false, "Missing command", null);
+            sendResponse(conn, handle, false, "Missing command", null);
             return;
         }
         String command = data.get("command").getAsString();
@@ -242,137 +662,506 @@ public class ApiServer extends WebSocketServer {
         Bukkit.getScheduler().runTask(ServerSee.getInstance(), () -> {
             Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
         });
-        sendResponse(conn, requestId, true, "Command sent", Map.of("command", command));
+        sendResponse(conn, handle, true, "Command sent", Map.of("command", command));
     }
 
-    private void handleRestart(WebSocket conn, String requestId) {
+    private void handleRestart(WebSocket conn, RequestHandle handle) {
         String restartCommand = ServerSee.getInstance().getConfig().getString("restart-command", "restart");
-        sendResponse(conn, requestId, true, "Server restarting", Map.of("command", restartCommand));
+        sendResponse(conn, handle, true, "Server restarting", Map.of("command", restartCommand));
         Bukkit.getScheduler().runTaskLater(ServerSee.getInstance(), () -> {
             Bukkit.dispatchCommand(Bukkit.getConsoleSender(), restartCommand);
         }, 20L);
     }
 
-    private void handleShutdown(WebSocket conn, String requestId) {
-        sendResponse(conn, requestId, true, "Server shutting down", null);
+    private void handleShutdown(WebSocket conn, RequestHandle handle) {
+        sendResponse(conn, handle, true, "Server shutting down", null);
         Bukkit.getScheduler().runTaskLater(ServerSee.getInstance(), Bukkit::shutdown, 20L);
     }
 
-    private void handleWhitelist(WebSocket conn, String requestId) {
-        sendResponse(conn, requestId, true, null, Map.of(
+    /**
+     * 取出 batch 中的子请求列表
+     */
+    private static List<JsonObject> parseBatch(JsonObject data) {
+        if (data == null || !data.has("requests") || !data.get("requests").isJsonArray()) {
+            throw new IllegalArgumentException("Missing requests");
+        }
+        JsonArray array = data.getAsJsonArray("requests");
+        if (array.size() == 0 || array.size() > MAX_BATCH_REQUESTS) {
+            throw new IllegalArgumentException("A batch must contain 1 to " + MAX_BATCH_REQUESTS + " requests");
+        }
+        List<JsonObject> requests = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            requests.add(array.get(i).getAsJsonObject());
+        }
+        return requests;
+    }
+
+    private void handleBatch(WebSocket conn, RequestHandle handle, JsonObject data) {
+        List<JsonObject> subRequests = parseBatch(data);
+        boolean stream = data.has("stream") && data.get("stream").getAsBoolean();
+        boolean sequential = data.has("sequential") && data.get("sequential").getAsBoolean();
+
+        // 子请求照常处理并回复，响应按子请求自身的位置转交给 batch 汇总
+        BatchResponse batch = new BatchResponse(conn, handle.getId(), ClientSession.formatOf(conn), stream, subRequests.size());
+        for (int i = 0; i < subRequests.size(); i++) {
+            // batch 本身已超时
+            if (Thread.currentThread().isInterrupted()) break;
+            JsonObject sub = subRequests.get(i);
+            String action = sub.has("action") ? sub.get("action").getAsString() : "";
+            String subId = sub.has("id") ? sub.get("id").getAsString() : handle.getId() + "/" + i;
+            RequestHandle subHandle = new RequestHandle(subId, batch, i);
+            JsonObject subData = sub.has("data") && sub.get("data").isJsonObject() ? sub.getAsJsonObject("data") : null;
+            if ("batch".equals(action) || "auth".equals(action) || "admin/profiler/fetch".equals(action)) {
+                sendResponse(conn, subHandle, false, "Action not allowed in batch", null);
+            } else if ("ping".equals(action)) {
+                sendResponse(conn, subHandle, true, "pong", null);
+            } else if (sequential || sensitiveActions.contains(action)) {
+                // 会修改服务器状态的操作在当前线程中按顺序执行
+                runSubRequest(conn, action, subHandle, subData);
+            } else if (!dispatcher.dispatch(conn, action, subHandle, () -> runSubRequest(conn, action, subHandle, subData))) {
+                sendResponse(conn, subHandle, false, "Server busy, please retry later", Map.of("busy", true));
+            }
+        }
+
+        if (!dispatcher.beginResponse(handle)) {
+            batch.cancel();
+            return;
+        }
+        batch.arm();
+    }
+
+    private void runSubRequest(WebSocket conn, String action, RequestHandle handle, JsonObject data) {
+        try {
+            handleAction(conn, action, handle, data);
+        } catch (Exception e) {
+            sendResponse(conn, handle, false, "Invalid Request: " + e.getMessage(), null);
+        }
+    }
+
+    private void handleAuth(WebSocket conn, RequestHandle handle) {
+        ClientSession session = conn.getAttachment();
+        if (session == null) {
+            sendResponse(conn, handle, false, "Connection not ready", null);
+            return;
+        }
+        SessionKey key;
+        try {
+            key = SessionKey.issue(tokenManager.getCurrentToken(), sessionTtlMs);
+        } catch (GeneralSecurityException e) {
+            sendResponse(conn, handle, false, "Failed to issue session key: " + e.getMessage(), null);
+            return;
+        }
+        // 重新握手时替换旧密钥，seq 从头开始
+        session.setSessionKey(key);
+        Map<String, Object> result = new LinkedHashMap<>();
+        // 只返回 salt，会话密钥由客户端用 Token 自行派生
+        result.put("salt", key.getSalt());
+        result.put("expires_at", key.getExpiresAt());
+        result.put("ttl_ms", sessionTtlMs);
+        result.put("sensitive_actions", sensitiveActions);
+        sendResponse(conn, handle, true, null, result);
+    }
+
+    /**
+     * 清除过期的会话密钥并通知客户端重新握手
+     */
+    private void sweepSessionKeys() {
+        long now = System.currentTimeMillis();
+        for (WebSocket conn : getConnections()) {
+            ClientSession session = conn.getAttachment();
+            if (session != null && session.expireSessionKey(now) && conn.isOpen()) {
+                encodePush(session.getFormat(), "auth/expired", Map.of()).send(conn);
+            }
+        }
+    }
+
+    private void handleWhitelist(WebSocket conn, RequestHandle handle) {
+        sendCachedResponse(conn, handle, CACHE_WHITELIST, () -> callOnMainThread(() -> Map.of(
             "enabled", Bukkit.hasWhitelist(),
             "players", Bukkit.getWhitelistedPlayers().stream().map(OfflinePlayer::getName).toList()
-        ));
+        )));
+    }
+
+    private void handleCacheStats(WebSocket conn, RequestHandle handle) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", responseCache.getHits());
+        stats.put("misses", responseCache.getMisses());
+        stats.put("entries", responseCache.size());
+        stats.put("ttl_ms", responseCache.getTtlMs());
+        sendResponse(conn, handle, true, null, stats);
+    }
+
+    /**
+     * 清空响应缓存，配置重载等会影响只读接口内容的操作后调用
+     */
+    public void invalidateResponseCache() {
+        responseCache.invalidateAll();
     }
 
-    private void handleWhitelistToggle(WebSocket conn, String requestId, JsonObject data) {
+    private void handleWhitelistToggle(WebSocket conn, RequestHandle handle, JsonObject data) {
         boolean enabled = data != null && data.has("enabled") && data.get("enabled").getAsBoolean();
-        Bukkit.setWhitelist(enabled);
-        sendResponse(conn, requestId, true, "Whitelist status updated", Map.of("enabled", enabled));
+        callOnMainThread(() -> {
+            Bukkit.setWhitelist(enabled);
+            return null;
+        });
+        responseCache.invalidate(CACHE_WHITELIST);
+        sendResponse(conn, handle, true, "Whitelist status updated", Map.of("enabled", enabled));
     }
 
-    private void handleWhitelistAdd(WebSocket conn, String requestId, JsonObject data) {
+    private void handleWhitelistAdd(WebSocket conn, RequestHandle handle, JsonObject data) {
         if (data == null || !data.has("name")) {
-            sendResponse(conn, requestId, false, "Missing player name", null);
+            sendResponse(conn, handle, false, "Missing player name", null);
             return;
         }
         String name = data.get("name").getAsString();
-        Bukkit.getOfflinePlayer(name).setWhitelisted(true);
-        sendResponse(conn, requestId, true, "Player added to whitelist", Map.of("name", name));
+        UUID uuid = await(profileResolver.resolve(name));
+        if (uuid == null) {
+            sendResponse(conn, handle, false, "Player not found", Map.of("name", name));
+            return;
+        }
+        callOnMainThread(() -> {
+            Bukkit.getOfflinePlayer(uuid).setWhitelisted(true);
+            return null;
+        });
+        responseCache.invalidate(CACHE_WHITELIST);
+        sendResponse(conn, handle, true, "Player added to whitelist", Map.of("name", name));
     }
 
-    private void handleWhitelistRemove(WebSocket conn, String requestId, JsonObject data) {
+    private void handleWhitelistRemove(WebSocket conn, RequestHandle handle, JsonObject data) {
         if (data == null || !data.has("name")) {
-            sendResponse(conn, requestId, false, "Missing player name", null);
+            sendResponse(conn, handle, false, "Missing player name", null);
             return;
         }
         String name = data.get("name").getAsString();
-        Bukkit.getOfflinePlayer(name).setWhitelisted(false);
-        sendResponse(conn, requestId, true, "Player removed from whitelist", Map.of("name", name));
+        UUID uuid = await(profileResolver.resolve(name));
+        if (uuid == null) {
+            sendResponse(conn, handle, false, "Player not found", Map.of("name", name));
+            return;
+        }
+        callOnMainThread(() -> {
+            Bukkit.getOfflinePlayer(uuid).setWhitelisted(false);
+            return null;
+        });
+        responseCache.invalidate(CACHE_WHITELIST);
+        sendResponse(conn, handle, true, "Player removed from whitelist", Map.of("name", name));
     }
 
-    private void handleLogsSubscribe(WebSocket conn, String requestId) {
-        authenticatedSessions.add(conn);
-        int historyLines = ServerSee.getInstance().getConfig().getInt("log-history-lines", 50);
-        List<String> latestLogs = readLatestLogs(historyLines);
-        for (String log : latestLogs) {
-            broadcastPush(conn, "log", log);
-        }
-        sendResponse(conn, requestId, true, "Subscribed to logs", null);
+    /**
+     * 在主线程中执行并等待结果。请求超时中断工作线程时，尚未执行的操作会被取消
+     */
+    private <T> T callOnMainThread(Callable<T> action) {
+        return await(mainThreadBus.submit(action));
     }
 
-    private void sendResponse(WebSocket conn, String requestId, boolean success, String message, Object data) {
-        JsonObject response = new JsonObject();
-        response.addProperty("id", requestId);
-        response.addProperty("type", "response");
-        response.addProperty("success", success);
-        if (message != null) response.addProperty("message", message);
-        if (data != null) response.add("data", gson.toJsonTree(data));
-        conn.send(gson.toJson(response));
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new CompletionException(cause);
+        }
     }
 
-    private void broadcastPush(WebSocket conn, String action, Object data) {
-        JsonObject push = new JsonObject();
-        push.addProperty("type", "push");
-        push.addProperty("action", action);
-        push.add("data", gson.toJsonTree(data));
-        conn.send(gson.toJson(push));
+    private void handleSpikes(WebSocket conn, RequestHandle handle, JsonObject data) {
+        if (lagSpikeDetector == null) {
+            sendResponse(conn, handle, false, "Lag spike detection is disabled", null);
+            return;
+        }
+        int limit = 10;
+        if (data != null && data.has("limit")) {
+            limit = data.get("limit").getAsInt();
+        }
+        List<LagSpike> spikes = lagSpikeDetector.getRecentSpikes(limit);
+        try {
+            FrameBuffer frame = FrameBuffer.create(ClientSession.formatOf(conn));
+            JsonWriter out = beginResponse(frame, handle);
+            out.beginObject();
+            out.name("spikes").beginArray();
+            for (LagSpike spike : spikes) {
+                spike.write(out);
+            }
+            out.endArray();
+            out.endObject();
+            out.endObject();
+            if (dispatcher.beginResponse(handle)) {
+                deliverResponse(conn, handle, frame);
+            }
+        } catch (IOException e) {
+            ServerSee.getInstance().getLogger().warning("发送响应失败: " + e.getMessage());
+        }
     }
 
-    public void broadcastLog(String message) {
-        for (WebSocket session : authenticatedSessions) {
-            if (session.isOpen()) {
-                broadcastPush(session, "log", message);
+    private void handleProfilerStart(WebSocket conn, RequestHandle handle, JsonObject data) {
+        int interval = 0;
+        int duration = 0;
+        List<String> threads = new ArrayList<>();
+        if (data != null) {
+            if (data.has("interval")) interval = data.get("interval").getAsInt();
+            if (data.has("duration")) duration = data.get("duration").getAsInt();
+            if (data.has("threads")) {
+                data.getAsJsonArray("threads").forEach(e -> threads.add(e.getAsString()));
             }
         }
+        if (!profiler.start(interval, threads, duration)) {
+            sendResponse(conn, handle, false, "Profiler is already running", null);
+            return;
+        }
+        sendResponse(conn, handle, true, "Profiler started", null);
     }
 
-    private List<String> readLatestLogs(int lines) {
-        List<String> result = new ArrayList<>();
-        File logFile = new File("logs" + File.separator + "latest.log");
-        if (!logFile.exists()) return result;
-
-        try (RandomAccessFile raf = new RandomAccessFile(logFile, "r")) {
-            long length = raf.length();
-            if (length == 0) return result;
-
-            long pos = length - 1;
-            int count = 0;
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-
-            while (pos >= 0 && count < lines) {
-                raf.seek(pos);
-                int b = raf.read();
-                if (b == '\n') {
-                    if (bos.size() > 0) {
-                        byte[] bytes = bos.toByteArray();
-                        for (int i = 0; i < bytes.length / 2; i++) {
-                            byte temp = bytes[i];
-                            bytes[i] = bytes[bytes.length - 1 - i];
-                            bytes[bytes.length - 1 - i] = temp;
-                        }
-                        result.add(0, new String(bytes, StandardCharsets.UTF_8).trim());
-                        bos.reset();
-                        count++;
-                    }
-                } else if (b != '\r') {
-                    bos.write(b);
+    private void handleProfilerStop(WebSocket conn, RequestHandle handle) {
+        if (!profiler.stop()) {
+            sendResponse(conn, handle, false, "Profiler is not running", null);
+            return;
+        }
+        sendResponse(conn, handle, true, "Profiler stopped", null);
+    }
+
+    private void handleProfilerFetch(WebSocket conn, RequestHandle handle) {
+        if (!profiler.hasResult()) {
+            sendResponse(conn, handle, false, "No profiler result available", null);
+            return;
+        }
+        // 先发送描述信息，随后以二进制分块流式发送 gzip 压缩的 JSON 结果
+        sendResponse(conn, handle, true, null, Map.of(
+            "running", profiler.isRunning(),
+            "encoding", "gzip",
+            "format", "json"
+        ));
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new ChunkedFrameOutputStream(conn, ClientSession.formatOf(conn), handle.getId(), BINARY_CHUNK_SIZE), BINARY_CHUNK_SIZE),
+                StandardCharsets.UTF_8))) {
+            profiler.writeResult(writer);
+        } catch (IOException e) {
+            ServerSee.getInstance().getLogger().warning("发送分析结果失败: " + e.getMessage());
+        }
+    }
+
+    private void handleLogsHistory(WebSocket conn, RequestHandle handle, JsonObject data) {
+        int lines = ServerSee.getInstance().getConfig().getInt("log-history-lines", 50);
+        int offset = 0;
+        if (data != null) {
+            if (data.has("lines")) lines = data.get("lines").getAsInt();
+            if (data.has("offset")) offset = data.get("offset").getAsInt();
+        }
+        lines = Math.max(1, Math.min(lines, MAX_LOG_HISTORY_LINES));
+        offset = Math.max(0, offset);
+        try {
+            LogTailReader.Page page = LogTailReader.read(LATEST_LOG, offset, lines);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("lines", page.lines);
+            result.put("offset", offset);
+            result.put("has_more", page.hasMore);
+            sendResponse(conn, handle, true, null, result);
+        } catch (IOException e) {
+            sendResponse(conn, handle, false, "Failed to read log: " + e.getMessage(), null);
+        }
+    }
+
+    private void handleLogsSearch(WebSocket conn, RequestHandle handle, JsonObject data) {
+        LogSearcher.Query query = new LogSearcher.Query();
+        try {
+            if (data != null) {
+                boolean regex = data.has("regex") && data.get("regex").getAsBoolean();
+                boolean caseSensitive = data.has("case_sensitive") && data.get("case_sensitive").getAsBoolean();
+                if (data.has("query") && !data.get("query").getAsString().isEmpty()) {
+                    String text = data.get("query").getAsString();
+                    query.pattern = Pattern.compile(regex ? text : Pattern.quote(text),
+                            caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                }
+                if (data.has("from")) query.from = data.get("from").getAsLong();
+                if (data.has("to")) query.to = data.get("to").getAsLong();
+                if (data.has("level")) query.minLevel = LogFilter.rank(data.get("level").getAsString());
+                if (data.has("limit")) query.limit = Math.max(1, Math.min(data.get("limit").getAsInt(), MAX_LOG_SEARCH_RESULTS));
+                if (data.has("cursor") && !data.get("cursor").isJsonNull()) {
+                    String cursor = data.get("cursor").getAsString();
+                    int sep = cursor.lastIndexOf('|');
+                    if (sep <= 0) throw new IllegalArgumentException("Invalid cursor");
+                    query.cursorFile = cursor.substring(0, sep);
+                    query.cursorLine = Long.parseLong(cursor.substring(sep + 1));
                 }
-                pos--;
             }
-            if (bos.size() > 0 && count < lines) {
-                byte[] bytes = bos.toByteArray();
-                for (int i = 0; i < bytes.length / 2; i++) {
-                    byte temp = bytes[i];
-                    bytes[i] = bytes[bytes.length - 1 - i];
-                    bytes[bytes.length - 1 - i] = temp;
+        } catch (PatternSyntaxException e) {
+            sendResponse(conn, handle, false, "Invalid regex: " + e.getDescription(), null);
+            return;
+        } catch (IllegalArgumentException e) {
+            sendResponse(conn, handle, false, "Invalid search parameters: " + e.getMessage(), null);
+            return;
+        }
+
+        // 在当前工作线程中执行，搜索期间一直占用 action 并发名额，超时后中断扫描
+        LogSearcher.Result result;
+        try {
+            result = logSearcher.search(query);
+        } catch (InterruptedIOException e) {
+            return;
+        } catch (IOException e) {
+            sendResponse(conn, handle, false, "Search failed: " + e.getMessage(), null);
+            return;
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("matches", result.matches);
+        response.put("next_cursor", result.nextCursor);
+        response.put("scanned_files", result.scannedFiles);
+        sendResponse(conn, handle, true, null, response);
+    }
+
+    private void handleLogsSubscribe(WebSocket conn, RequestHandle handle, JsonObject data) {
+        LogFilter filter = LogFilter.ALL;
+        if (data != null) {
+            String level = data.has("level") ? data.get("level").getAsString() : null;
+            String[] loggers = null;
+            if (data.has("loggers") && data.get("loggers").isJsonArray()) {
+                JsonArray array = data.getAsJsonArray("loggers");
+                loggers = new String[array.size()];
+                for (int i = 0; i < array.size(); i++) {
+                    loggers[i] = array.get(i).getAsString();
                 }
-                result.add(0, new String(bytes, StandardCharsets.UTF_8).trim());
             }
+            filter = LogFilter.of(level, loggers);
+        }
+        long since = data != null && data.has("since") ? data.get("since").getAsLong() : -1;
+        int historyLines = ServerSee.getInstance().getConfig().getInt("log-history-lines", 50);
+        try {
+            sendResponse(conn, handle, true, "Subscribed to logs", logBroadcaster.subscribe(conn, filter, since, historyLines));
         } catch (IOException e) {
-            ServerSee.getInstance().getLogger().warning("无法读取日志文件: " + e.getMessage());
+            sendResponse(conn, handle, false, "Failed to subscribe: " + e.getMessage(), null);
         }
-        return result;
+    }
+
+    /**
+     * 发送缓存的响应，只在未命中时构建并序列化 data。
+     * 先取得数据再确认回复，加载 (如等待主线程) 期间请求仍受超时控制
+     */
+    private void sendCachedResponse(WebSocket conn, RequestHandle handle, String key, Supplier<Object> loader) {
+        WireFormat format = ClientSession.formatOf(conn);
+        if (format == WireFormat.MSGPACK) {
+            byte[] data = responseCache.get(key, format, () -> encodeMessagePack(loader.get()));
+            if (!dispatcher.beginResponse(handle)) return;
+            try {
+                FrameBuffer frame = FrameBuffer.create(format);
+                MessagePackWriter out = (MessagePackWriter) beginResponse(frame, handle);
+                out.rawValue(data);
+                out.endObject();
+                deliverResponse(conn, handle, frame);
+            } catch (IOException e) {
+                ServerSee.getInstance().getLogger().warning("发送响应失败: " + e.getMessage());
+            }
+            return;
+        }
+        String data = responseCache.get(key, format, () -> gson.toJson(loader.get()));
+        if (!dispatcher.beginResponse(handle)) return;
+        StringBuilder response = new StringBuilder(data.length() + 64).append('{');
+        if (handle.getId() != null) {
+            response.append("\"id\":").append(gson.toJson(handle.getId())).append(',');
+        }
+        response.append("\"type\":\"response\",\"success\":true,\"data\":").append(data).append('}');
+        if (handle.batch == null) {
+            conn.send(response.toString());
+            return;
+        }
+        try {
+            FrameBuffer frame = FrameBuffer.create(format);
+            frame.writer().jsonValue(response.toString());
+            handle.batch.complete(handle.batchIndex, frame);
+        } catch (IOException e) {
+            ServerSee.getInstance().getLogger().warning("发送响应失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 发出一条完整的响应。batch 子请求的响应交给对应的 batch 汇总，不直接发送
+     */
+    private void deliverResponse(WebSocket conn, RequestHandle handle, FrameBuffer frame) {
+        if (handle.batch != null) {
+            handle.batch.complete(handle.batchIndex, frame);
+        } else {
+            frame.send(conn);
+        }
+    }
+
+    private byte[] encodeMessagePack(Object value) {
+        MessagePackWriter out = new MessagePackWriter();
+        gson.toJson(value, value.getClass(), out);
+        return out.toByteArray();
+    }
+
+    private void sendResponse(WebSocket conn, RequestHandle handle, boolean success, String message, Object data) {
+        // 已经回复过超时的请求丢弃迟到的响应
+        if (!dispatcher.beginResponse(handle)) return;
+        writeResponse(conn, handle, success, message, data);
+    }
+
+    private void writeResponse(WebSocket conn, RequestHandle handle, boolean success, String message, Object data) {
+        try {
+            FrameBuffer frame = FrameBuffer.create(ClientSession.formatOf(conn));
+            JsonWriter out = frame.writer();
+            out.beginObject();
+            out.name("id").value(handle.getId());
+            out.name("type").value("response");
+            out.name("success").value(success);
+            if (message != null) out.name("message").value(message);
+            if (data != null) {
+                out.name("data");
+                gson.toJson(data, data.getClass(), out);
+            }
+            out.endObject();
+            deliverResponse(conn, handle, frame);
+        } catch (IOException e) {
+            ServerSee.getInstance().getLogger().warning("发送响应失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 写出响应头部并定位到 data 字段，调用方写完 data 后需结束外层对象
+     */
+    private JsonWriter beginResponse(FrameBuffer frame, RequestHandle handle) throws IOException {
+        JsonWriter out = frame.writer();
+        out.beginObject();
+        out.name("id").value(handle.getId());
+        out.name("type").value("response");
+        out.name("success").value(true);
+        out.name("data");
+        return out;
+    }
+
+    /**
+     * 按格式编码一帧推送消息
+     */
+    private FrameBuffer encodePush(WireFormat format, String action, Object data) {
+        FrameBuffer frame = FrameBuffer.create(format);
+        try {
+            JsonWriter out = frame.writer();
+            out.beginObject();
+            out.name("type").value("push");
+            out.name("action").value(action);
+            out.name("data");
+            gson.toJson(data, data.getClass(), out);
+            out.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame;
+    }
+
+    /**
+     * 由日志捕获调用，只把事件放入广播队列，不在调用线程中编码或发送
+     */
+    void broadcastLog(LogEntry.Origin origin, long time, String level, String logger, String message) {
+        logBroadcaster.offer(new LogEntry(origin, time, level, logger, message));
+    }
+
+    /**
+     * Log4j 捕获生效后，JUL 的事件会经由 Log4j 重复到达，此时只保留 Log4j 来源
+     */
+    public void setLog4jCaptureActive(boolean active) {
+        logBroadcaster.setLog4jActive(active);
     }
 
     private String getServerIconBase64() {
@@ -397,11 +1186,26 @@ public class ApiServer extends WebSocketServer {
 
     @Override
     public void onError(WebSocket conn, Exception ex) {
-        if (conn != null) authenticatedSessions.remove(conn);
+        if (conn != null) {
+            metricsBroadcaster.unsubscribe(conn);
+            logBroadcaster.unsubscribe(conn);
+        }
     }
 
     @Override
     public void onStart() {
+        logBroadcaster.start();
         ServerSee.getInstance().getLogger().info("WebSocket API 服务已启动，监听端口: " + getPort());
     }
+
+    @Override
+    public void stop(int timeout) throws InterruptedException {
+        logBroadcaster.stop();
+        dispatcher.shutdown();
+        mainThreadBus.stop();
+        profileResolver.shutdown();
+        HandlerList.unregisterAll(cacheListener);
+        HandlerList.unregisterAll(profileResolver);
+        super.stop(timeout);
+    }
 }
@@ -0,0 +1,102 @@
+package cn.lemwood.serversee.api;
+
+import cn.lemwood.serversee.ServerSee;
+import com.google.gson.stream.JsonWriter;
+import org.java_websocket.WebSocket;
+
+import java.io.IOException;
+
+/**
+ * 汇总一个 batch 请求中各子请求的响应。
+ * 子请求的响应照常编码，随后按其在 batch 中的位置交到这里: 默认在全部完成后按请求顺序合并为一帧发送；
+ * 流式模式下每完成一个就单独发送一帧，全部完成后再发送一条结束响应。
+ */
+final class BatchResponse {
+    private final WebSocket conn;
+    private final String batchId;
+    private final WireFormat format;
+    private final boolean stream;
+    private final FrameBuffer[] results;
+    private int remaining;
+    private boolean armed = false;
+    private boolean cancelled = false;
+
+    BatchResponse(WebSocket conn, String batchId, WireFormat format, boolean stream, int count) {
+        this.conn = conn;
+        this.batchId = batchId;
+        this.format = format;
+        this.stream = stream;
+        this.results = new FrameBuffer[count];
+        this.remaining = count;
+    }
+
+    /**
+     * 收到第 index 个子请求的完整响应，同一子请求只取第一次回复
+     */
+    synchronized void complete(int index, FrameBuffer response) {
+        if (results[index] != null) return;
+        results[index] = response;
+        remaining--;
+        if (cancelled) return;
+        if (stream) sendItem(index, response);
+        if (armed && remaining == 0) finish();
+    }
+
+    /**
+     * 所有子请求都已提交，之后完成最后一个子请求时发送汇总响应
+     */
+    synchronized void arm() {
+        armed = true;
+        if (remaining == 0) finish();
+    }
+
+    /**
+     * batch 本身已回复超时，不再发送任何结果
+     */
+    synchronized void cancel() {
+        cancelled = true;
+    }
+
+    private void sendItem(int index, FrameBuffer response) {
+        try {
+            FrameBuffer frame = FrameBuffer.create(format);
+            JsonWriter out = frame.writer();
+            out.beginObject();
+            out.name("id").value(batchId);
+            out.name("type").value("batch_item");
+            out.name("index").value(index);
+            out.name("data");
+            response.writeTo(out);
+            out.endObject();
+            frame.send(conn);
+        } catch (IOException e) {
+            ServerSee.getInstance().getLogger().warning("发送响应失败: " + e.getMessage());
+        }
+    }
+
+    private void finish() {
+        try {
+            FrameBuffer frame = FrameBuffer.create(format);
+            JsonWriter out = frame.writer();
+            out.beginObject();
+            out.name("id").value(batchId);
+            out.name("type").value("response");
+            out.name("success").value(true);
+            out.name("data").beginObject();
+            if (stream) {
+                out.name("count").value(results.length);
+            } else {
+                out.name("results").beginArray();
+                for (FrameBuffer result : results) {
+                    result.writeTo(out);
+                }
+                out.endArray();
+            }
+            out.endObject();
+            out.endObject();
+            frame.send(conn);
+        } catch (IOException e) {
+            ServerSee.getInstance().getLogger().warning("发送响应失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package cn.lemwood.serversee.api;
+
+import cn.lemwood.serversee.ServerSee;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * 玩家进出服务器时使状态缓存失效
+ */
+class CacheInvalidationListener implements Listener {
+    private final ResponseCache cache;
+
+    CacheInvalidationListener(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        cache.invalidate(ApiServer.CACHE_STATUS);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        cache.invalidate(ApiServer.CACHE_STATUS);
+        // 退出事件触发时玩家仍在在线列表中，下一 tick 再失效一次
+        Bukkit.getScheduler().runTask(ServerSee.getInstance(), () -> cache.invalidate(ApiServer.CACHE_STATUS));
+    }
+}
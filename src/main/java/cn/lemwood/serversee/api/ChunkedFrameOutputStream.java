@@ -0,0 +1,92 @@
+package cn.lemwood.serversee.api;
+
+import org.java_websocket.WebSocket;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 将字节流切分为若干个二进制 WebSocket 消息发送，每个消息都带有请求 ID，
+ * 便于在不占用大块内存的情况下流式输出压缩后的结果。
+ * 帧格式: [u16 id 长度][id (UTF-8)][u32 序号][u8 标志位 (bit0 = 最后一块)][数据]
+ * MessagePack 连接的所有二进制帧都是 MessagePack 消息，因此改为发送
+ * {"id", "type": "chunk", "seq", "last", "data": bin} 结构。
+ */
+class ChunkedFrameOutputStream extends OutputStream {
+    private static final int FLAG_LAST = 1;
+
+    private final WebSocket conn;
+    private final WireFormat format;
+    private final String requestId;
+    private final byte[] id;
+    private final byte[] buffer;
+    private int count = 0;
+    private int sequence = 0;
+    private boolean closed = false;
+
+    ChunkedFrameOutputStream(WebSocket conn, WireFormat format, String requestId, int chunkSize) {
+        this.conn = conn;
+        this.format = format;
+        this.requestId = requestId;
+        this.id = (requestId == null ? "" : requestId).getBytes(StandardCharsets.UTF_8);
+        this.buffer = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) sendChunk(false);
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) sendChunk(false);
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        sendChunk(true);
+    }
+
+    private void sendChunk(boolean last) throws IOException {
+        if (format == WireFormat.MSGPACK) {
+            MessagePackWriter out = new MessagePackWriter();
+            out.setSerializeNulls(false);
+            out.beginObject();
+            out.name("id").value(requestId);
+            out.name("type").value("chunk");
+            out.name("seq").value(sequence++);
+            out.name("last").value(last);
+            out.name("data");
+            out.binaryValue(buffer, 0, count);
+            out.endObject();
+            if (conn.isOpen()) {
+                conn.send(out.toByteArray());
+            }
+            count = 0;
+            return;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(2 + id.length + 4 + 1 + count);
+        frame.putShort((short) id.length);
+        frame.put(id);
+        frame.putInt(sequence++);
+        frame.put((byte) (last ? FLAG_LAST : 0));
+        frame.put(buffer, 0, count);
+        frame.flip();
+        if (conn.isOpen()) {
+            conn.send(frame);
+        }
+        count = 0;
+    }
+}
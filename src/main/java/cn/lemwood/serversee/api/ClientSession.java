@@ -0,0 +1,87 @@
+package cn.lemwood.serversee.api;
+
+import cn.lemwood.serversee.auth.SessionKey;
+import org.java_websocket.WebSocket;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接级别的状态，作为 WebSocket 的 attachment 保存
+ */
+final class ClientSession {
+    private static final ClientSession DEFAULT = new ClientSession(WireFormat.JSON, null, null);
+    private static final long RATE_LIMIT_NOTICE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final WireFormat format;
+    private final String address;
+    private final RateLimiter.Bucket rateBucket;
+    private volatile long lastRateLimitNotice = System.nanoTime() - RATE_LIMIT_NOTICE_INTERVAL;
+    private volatile SessionKey sessionKey;
+
+    ClientSession(WireFormat format, String address, RateLimiter.Bucket rateBucket) {
+        this.format = format;
+        this.address = address;
+        this.rateBucket = rateBucket;
+    }
+
+    WireFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * 客户端 IP，握手完成前为 null
+     */
+    String getAddress() {
+        return address;
+    }
+
+    /**
+     * 本连接的令牌桶，握手完成前为 null
+     */
+    RateLimiter.Bucket getRateBucket() {
+        return rateBucket;
+    }
+
+    /**
+     * 消息被限流时是否应回复提示，每秒最多一次，避免洪泛时为每条消息都回复
+     */
+    boolean allowRateLimitNotice() {
+        long now = System.nanoTime();
+        if (now - lastRateLimitNotice < RATE_LIMIT_NOTICE_INTERVAL) return false;
+        lastRateLimitNotice = now;
+        return true;
+    }
+
+    /**
+     * auth 握手签发的会话密钥，未握手或已过期清除时为 null
+     */
+    SessionKey getSessionKey() {
+        return sessionKey;
+    }
+
+    synchronized void setSessionKey(SessionKey sessionKey) {
+        this.sessionKey = sessionKey;
+    }
+
+    /**
+     * 清除已过期的会话密钥，期间重新握手得到的新密钥不受影响
+     * @return 是否清除了密钥
+     */
+    synchronized boolean expireSessionKey(long now) {
+        if (sessionKey == null || !sessionKey.isExpired(now)) return false;
+        sessionKey = null;
+        return true;
+    }
+
+    /**
+     * 握手完成前或未设置时返回默认会话
+     */
+    static ClientSession of(WebSocket conn) {
+        ClientSession session = conn.getAttachment();
+        return session != null ? session : DEFAULT;
+    }
+
+    static WireFormat formatOf(WebSocket conn) {
+        return of(conn).format;
+    }
+}
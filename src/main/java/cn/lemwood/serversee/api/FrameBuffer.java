@@ -0,0 +1,67 @@
+package cn.lemwood.serversee.api;
+
+import com.google.gson.stream.JsonWriter;
+import org.java_websocket.WebSocket;
+import org.java_websocket.server.WebSocketServer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collection;
+
+/**
+ * 一条待发送的消息: 调用方通过 {@link #writer()} 写入内容，
+ * 按编码格式以文本帧 (JSON) 或二进制帧 (MessagePack) 发出。
+ */
+final class FrameBuffer {
+    private final StringWriter text;
+    private final MessagePackWriter packed;
+    private final JsonWriter writer;
+
+    private FrameBuffer(WireFormat format) {
+        if (format == WireFormat.MSGPACK) {
+            this.text = null;
+            this.packed = new MessagePackWriter();
+            this.writer = packed;
+        } else {
+            this.text = new StringWriter();
+            this.packed = null;
+            this.writer = new JsonWriter(text);
+        }
+        writer.setSerializeNulls(false);
+    }
+
+    static FrameBuffer create(WireFormat format) {
+        return new FrameBuffer(format);
+    }
+
+    JsonWriter writer() {
+        return writer;
+    }
+
+    void send(WebSocket conn) {
+        if (packed != null) {
+            conn.send(packed.toByteArray());
+        } else {
+            conn.send(text.toString());
+        }
+    }
+
+    /**
+     * 把本消息作为一个值写入同一格式的另一条消息
+     */
+    void writeTo(JsonWriter out) throws IOException {
+        if (packed != null) {
+            ((MessagePackWriter) out).rawValue(packed.toByteArray());
+        } else {
+            out.jsonValue(text.toString());
+        }
+    }
+
+    void broadcast(WebSocketServer server, Collection<WebSocket> conns) {
+        if (packed != null) {
+            server.broadcast(packed.toByteArray(), conns);
+        } else {
+            server.broadcast(text.toString(), conns);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package cn.lemwood.serversee.api;
+
+import cn.lemwood.serversee.database.HistoryConsumer;
+import com.google.gson.stream.JsonWriter;
+import org.java_websocket.WebSocket;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 将历史查询结果按固定行数切分为多条 chunk 消息发送，每条消息都带有请求 ID，
+ * 第一块额外带有 tier/bucket/agg。
+ * 发送下一块前会等待上一块写出，因此内存占用只与块大小有关，与总行数无关。
+ */
+class HistoryChunkWriter implements HistoryConsumer {
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final WebSocket conn;
+    private final WireFormat format;
+    private final String requestId;
+    private final int chunkRows;
+
+    private String tier;
+    private long bucket;
+    private String agg;
+    private List<String> fields;
+    private long[] timestamps;
+    private double[][] columns;
+    private int count = 0;
+    private int chunks = 0;
+    private long rows = 0;
+
+    HistoryChunkWriter(WebSocket conn, WireFormat format, String requestId, int chunkRows) {
+        this.conn = conn;
+        this.format = format;
+        this.requestId = requestId;
+        this.chunkRows = Math.max(1, chunkRows);
+    }
+
+    @Override
+    public void begin(String tier, long bucket, String agg, List<String> fields) {
+        this.tier = tier;
+        this.bucket = bucket;
+        this.agg = agg;
+        this.fields = fields;
+        this.timestamps = new long[chunkRows];
+        this.columns = new double[fields.size()][chunkRows];
+    }
+
+    @Override
+    public void row(long timestamp, double[] values) throws IOException {
+        timestamps[count] = timestamp;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i][count] = values[i];
+        }
+        count++;
+        rows++;
+        if (count == chunkRows) {
+            sendChunk();
+        }
+    }
+
+    /**
+     * 发送剩余的数据
+     */
+    void finish() throws IOException {
+        if (count > 0) {
+            sendChunk();
+        }
+    }
+
+    int getChunks() {
+        return chunks;
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    /**
+     * 查询选用的数据层级，begin 之前为 null
+     */
+    String getTier() {
+        return tier;
+    }
+
+    long getBucket() {
+        return bucket;
+    }
+
+    String getAgg() {
+        return agg;
+    }
+
+    private void sendChunk() throws IOException {
+        FrameBuffer frame = FrameBuffer.create(format);
+        JsonWriter out = frame.writer();
+        out.beginObject();
+        out.name("id").value(requestId);
+        out.name("type").value("chunk");
+        out.name("seq").value(chunks);
+        out.name("data").beginObject();
+        if (chunks == 0) {
+            out.name("tier").value(tier);
+            out.name("bucket").value(bucket);
+            out.name("agg").value(agg);
+        }
+        out.name("timestamp").beginArray();
+        for (int i = 0; i < count; i++) {
+            out.value(timestamps[i]);
+        }
+        out.endArray();
+        out.name("series").beginObject();
+        for (int f = 0; f < columns.length; f++) {
+            out.name(fields.get(f)).beginArray();
+            for (int i = 0; i < count; i++) {
+                out.value(columns[f][i]);
+            }
+            out.endArray();
+        }
+        out.endObject();
+        out.endObject();
+        out.endObject();
+
+        awaitDrain();
+        frame.send(conn);
+        chunks++;
+        count = 0;
+    }
+
+    private void awaitDrain() throws IOException {
+        // 请求超时后工作线程会被中断，不再继续发送
+        if (Thread.currentThread().isInterrupted()) throw new IOException("Interrupted");
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+        while (conn.hasBufferedData()) {
+            if (!conn.isOpen()) throw new IOException("Connection closed");
+            if (System.nanoTime() > deadline) throw new IOException("Client is not reading");
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted");
+            }
+        }
+        if (!conn.isOpen()) throw new IOException("Connection closed");
+    }
+}
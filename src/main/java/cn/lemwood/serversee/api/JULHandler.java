@@ -13,10 +13,7 @@ public class JULHandler extends Handler {
     @Override
     public void publish(LogRecord record) {
         if (apiServer != null) {
-            String message = record.getMessage();
-            String level = record.getLevel().getName();
-            String formatted = String.format("[%s] %s", level, message);
-            apiServer.broadcastLog(formatted);
+            apiServer.broadcastLog(LogEntry.Origin.JUL, record.getMillis(), record.getLevel().getName(), record.getLoggerName(), record.getMessage());
         }
     }
 
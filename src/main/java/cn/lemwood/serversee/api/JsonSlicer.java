@@ -0,0 +1,105 @@
+package cn.lemwood.serversee.api;
+
+/**
+ * 从 JSON 原文中截取顶层字段的值，不做解析与重新序列化。
+ * 只接受标准 JSON，遇到无法识别的内容时返回 null，由调用方退回到解析结果。
+ */
+final class JsonSlicer {
+    private JsonSlicer() {
+    }
+
+    /**
+     * 返回顶层对象中 key 对应值的原文；字段不存在或内容不规范时返回 null。
+     * 顶层字段名含转义字符或 key 重复出现时同样返回 null:
+     * 这两种情况下原文中的字段与解析后实际使用的字段可能不是同一个
+     */
+    static String valueOf(String json, String key) {
+        int i = skipWhitespace(json, 0);
+        if (i >= json.length() || json.charAt(i) != '{') return null;
+        i = skipWhitespace(json, i + 1);
+        if (i < json.length() && json.charAt(i) == '}') return null;
+
+        String found = null;
+        while (i < json.length()) {
+            if (json.charAt(i) != '"') return null;
+            int keyEnd = skipString(json, i);
+            if (keyEnd < 0) return null;
+            // 字段名含转义字符
+            if (json.lastIndexOf('\\', keyEnd - 2) > i) return null;
+            boolean match = keyEnd - i - 2 == key.length() && json.startsWith(key, i + 1);
+
+            i = skipWhitespace(json, keyEnd);
+            if (i >= json.length() || json.charAt(i) != ':') return null;
+            int start = skipWhitespace(json, i + 1);
+            int end = skipValue(json, start);
+            if (end < 0) return null;
+            if (match) {
+                if (found != null) return null;
+                found = json.substring(start, end);
+            }
+
+            i = skipWhitespace(json, end);
+            if (i >= json.length()) return null;
+            char c = json.charAt(i);
+            if (c == '}') return found;
+            if (c != ',') return null;
+            i = skipWhitespace(json, i + 1);
+        }
+        return null;
+    }
+
+    private static int skipValue(String json, int i) {
+        if (i >= json.length()) return -1;
+        char c = json.charAt(i);
+        if (c == '"') return skipString(json, i);
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            while (i < json.length()) {
+                c = json.charAt(i);
+                if (c == '"') {
+                    i = skipString(json, i);
+                    if (i < 0) return -1;
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0) return i + 1;
+                }
+                i++;
+            }
+            return -1;
+        }
+        // 数字、true、false、null
+        int start = i;
+        while (i < json.length()) {
+            c = json.charAt(i);
+            if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) break;
+            i++;
+        }
+        return i > start ? i : -1;
+    }
+
+    /**
+     * 返回字符串结束引号之后的位置
+     */
+    private static int skipString(String json, int i) {
+        i++;
+        while (i < json.length()) {
+            char c = json.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '"') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) i++;
+        return i;
+    }
+}
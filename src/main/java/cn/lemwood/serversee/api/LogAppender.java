@@ -12,7 +12,6 @@ import org.apache.logging.log4j.core.config.plugins.PluginElement;
 import org.apache.logging.log4j.core.config.plugins.PluginFactory;
 
 import java.io.Serializable;
-import java.nio.charset.StandardCharsets;
 
 public class LogAppender extends AbstractAppender {
     private final ApiServer apiServer;
@@ -25,10 +24,9 @@ public class LogAppender extends AbstractAppender {
     @Override
     public void append(LogEvent event) {
         if (apiServer != null) {
-            String message = event.getMessage().getFormattedMessage();
-            String level = event.getLevel().name();
-            String formatted = String.format("[%s] %s", level, message);
-            apiServer.broadcastLog(formatted);
+            // 消息对象可能被 Log4j 复用，必须在当前线程取出文本
+            apiServer.broadcastLog(LogEntry.Origin.LOG4J, event.getTimeMillis(), event.getLevel().name(), event.getLoggerName(),
+                    event.getMessage().getFormattedMessage());
         }
     }
 
@@ -0,0 +1,300 @@
+package cn.lemwood.serversee.api;
+
+import cn.lemwood.serversee.ServerSee;
+import com.google.gson.stream.JsonWriter;
+import org.java_websocket.WebSocket;
+import org.java_websocket.server.WebSocketServer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+
+/**
+ * 异步日志广播管线。
+ * 日志线程只把事件放入无锁的有界队列后立即返回；独立的广播线程按固定间隔批量取出，
+ * 每个周期编码为一帧并发送给订阅者。队列满时按配置丢弃最旧或最新的事件并计数，
+ * 因此记录日志永远不会阻塞服务器线程。
+ * 只有显式订阅的连接才会收到日志，过滤条件在编码前求值，每条事件最多编码一次。
+ * 广播线程同时把事件写入定长环形缓冲区，订阅时从缓冲区回放，客户端可凭序号断点续传。
+ */
+class LogBroadcaster implements Runnable {
+    private final WebSocketServer server;
+    private final Map<WebSocket, LogFilter> subscribers = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final int maxBatch;
+    private final long flushIntervalMs;
+    private final boolean dropOldest;
+    // 保护 ring、订阅表的登记与帧发送顺序，保证回放与实时推送之间不重不漏
+    private final Object lock = new Object();
+    private final LogRing ring;
+
+    private final Queue<LogEntry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private long reportedDropped = 0;
+    // Log4j 捕获生效时，JUL 的事件已经通过转发进入 Log4j，需要丢弃以免重复
+    private volatile boolean log4jActive = false;
+
+    private volatile boolean running = false;
+    private Thread thread;
+
+    LogBroadcaster(WebSocketServer server) {
+        this.server = server;
+        this.capacity = Math.max(16, ServerSee.getInstance().getConfig().getInt("log-broadcast.queue-capacity", 10000));
+        this.maxBatch = Math.max(1, ServerSee.getInstance().getConfig().getInt("log-broadcast.max-batch", 500));
+        this.flushIntervalMs = Math.max(10, ServerSee.getInstance().getConfig().getInt("log-broadcast.flush-interval-ms", 100));
+        this.dropOldest = !"drop-newest".equalsIgnoreCase(ServerSee.getInstance().getConfig().getString("log-broadcast.overflow-policy", "drop-oldest"));
+        this.ring = new LogRing(Math.max(16, ServerSee.getInstance().getConfig().getInt("log-broadcast.buffer-size", 2000)));
+    }
+
+    /**
+     * 用 latest.log 末尾的内容预填缓冲区，需在安装日志捕获之前调用
+     */
+    void seed(Path latestLog) {
+        List<String> lines;
+        try {
+            lines = LogTailReader.read(latestLog, 0, ring.capacity()).lines;
+        } catch (IOException e) {
+            ServerSee.getInstance().getLogger().warning("无法读取日志文件: " + e.getMessage());
+            return;
+        }
+        int count = lines.size();
+        LocalTime[] timesOfDay = new LocalTime[count];
+        String[] levels = new String[count];
+        String[] messages = new String[count];
+        for (int i = 0; i < count; i++) {
+            String line = lines.get(i);
+            messages[i] = line;
+            Matcher header = LogSearcher.LINE_HEADER.matcher(line);
+            if (header.find()) {
+                timesOfDay[i] = LocalTime.of(Integer.parseInt(header.group(1)),
+                        Integer.parseInt(header.group(2)), Integer.parseInt(header.group(3)));
+                levels[i] = header.group(4);
+                int start = header.end();
+                if (line.startsWith(": ", start)) start += 2;
+                messages[i] = line.substring(start);
+            }
+        }
+
+        // 日志行只记录时分秒: 最后一行按今天计算，从后往前时间变大说明跨过了午夜，日期退一天
+        long[] times = new long[count];
+        LocalDate date = LocalDate.now();
+        LocalTime later = null;
+        for (int i = count - 1; i >= 0; i--) {
+            if (timesOfDay[i] == null) continue;
+            if (later != null && timesOfDay[i].isAfter(later)) date = date.minusDays(1);
+            later = timesOfDay[i];
+            times[i] = date.atTime(later).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        String level = "INFO";
+        long time = System.currentTimeMillis();
+        synchronized (lock) {
+            for (int i = 0; i < count; i++) {
+                // 没有时间头的行 (如堆栈) 沿用上一行的时间与级别
+                if (timesOfDay[i] != null) {
+                    time = times[i];
+                    level = levels[i];
+                }
+                ring.append(new LogEntry(LogEntry.Origin.LOG4J, time, level, "", messages[i]));
+            }
+        }
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "ServerSee-LogBroadcaster");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * 登记订阅者，并把缓冲区中序号大于 since 的事件作为一帧回放。
+     * since 小于 0 或大于当前最新序号时回放最近 replayLimit 条；插件重载前的序号小于重载后的所有序号，
+     * 按续传处理并报告 gap。
+     *
+     * @return 订阅结果: 最新序号 seq、回放条数 replayed，以及 since 之后是否有事件已被覆盖 (gap)
+     */
+    Map<String, Object> subscribe(WebSocket conn, LogFilter filter, long since, int replayLimit) throws IOException {
+        synchronized (lock) {
+            boolean resume = since >= 0 && since <= ring.lastSeq();
+            List<LogEntry> replay = resume
+                    ? ring.since(since, Integer.MAX_VALUE)
+                    : ring.since(0, replayLimit);
+            sendFrame(replay, filter, 0, true, ClientSession.formatOf(conn), Collections.singletonList(conn));
+            subscribers.put(conn, filter);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("seq", ring.lastSeq());
+            result.put("replayed", replay.size());
+            result.put("gap", resume && since + 1 < ring.firstSeq());
+            return result;
+        }
+    }
+
+    boolean unsubscribe(WebSocket conn) {
+        return subscribers.remove(conn) != null;
+    }
+
+    void setLog4jActive(boolean active) {
+        this.log4jActive = active;
+    }
+
+    /**
+     * 由日志线程调用，不加锁、不阻塞
+     */
+    void offer(LogEntry entry) {
+        if (entry.origin == LogEntry.Origin.JUL && log4jActive) return;
+        if (size.incrementAndGet() > capacity) {
+            if (!dropOldest) {
+                size.decrementAndGet();
+                dropped.incrementAndGet();
+                return;
+            }
+            if (queue.poll() != null) {
+                size.decrementAndGet();
+                dropped.incrementAndGet();
+            }
+        }
+        queue.add(entry);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                flush();
+            } catch (Exception e) {
+                // 不能在这里记录日志，否则可能导致日志循环
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        List<LogEntry> batch = new ArrayList<>();
+        while (size.get() > 0) {
+            batch.clear();
+            LogEntry entry;
+            while (batch.size() < maxBatch && (entry = queue.poll()) != null) {
+                size.decrementAndGet();
+                batch.add(entry);
+            }
+            if (batch.isEmpty()) return;
+
+            long totalDropped = dropped.get();
+            long droppedSinceLast = totalDropped - reportedDropped;
+            reportedDropped = totalDropped;
+
+            synchronized (lock) {
+                for (LogEntry e : batch) {
+                    ring.append(e);
+                }
+                if (subscribers.isEmpty()) continue;
+
+                // 过滤条件与编码格式都相同的订阅者共用一帧
+                Map<LogFilter, Map<WireFormat, List<WebSocket>>> groups = new HashMap<>();
+                for (Map.Entry<WebSocket, LogFilter> subscriber : subscribers.entrySet()) {
+                    groups.computeIfAbsent(subscriber.getValue(), f -> new EnumMap<>(WireFormat.class))
+                            .computeIfAbsent(ClientSession.formatOf(subscriber.getKey()), f -> new ArrayList<>())
+                            .add(subscriber.getKey());
+                }
+                for (Map.Entry<LogFilter, Map<WireFormat, List<WebSocket>>> group : groups.entrySet()) {
+                    for (Map.Entry<WireFormat, List<WebSocket>> targets : group.getValue().entrySet()) {
+                        sendFrame(batch, group.getKey(), droppedSinceLast, false, targets.getKey(), targets.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 用每条事件缓存的编码片段拼接一帧并发送，调用方需持有 lock
+     */
+    private void sendFrame(List<LogEntry> batch, LogFilter filter, long droppedSinceLast, boolean replay,
+                           WireFormat format, Collection<WebSocket> targets) throws IOException {
+        List<LogEntry> matched = new ArrayList<>();
+        for (LogEntry entry : batch) {
+            if (filter.accepts(entry)) matched.add(entry);
+        }
+        if (matched.isEmpty() && droppedSinceLast == 0) return;
+
+        if (format == WireFormat.MSGPACK) {
+            MessagePackWriter out = new MessagePackWriter();
+            out.beginObject();
+            out.name("type").value("push");
+            out.name("action").value("logs");
+            out.name("data").beginObject();
+            out.name("entries").beginArray();
+            for (LogEntry entry : matched) {
+                if (entry.packed == null) {
+                    MessagePackWriter packed = new MessagePackWriter();
+                    writeEntry(packed, entry);
+                    entry.packed = packed.toByteArray();
+                }
+                out.rawValue(entry.packed);
+            }
+            out.endArray();
+            out.name("dropped").value(droppedSinceLast);
+            if (replay) out.name("replay").value(true);
+            out.endObject();
+            out.endObject();
+            server.broadcast(out.toByteArray(), targets);
+            return;
+        }
+
+        StringBuilder frame = new StringBuilder("{\"type\":\"push\",\"action\":\"logs\",\"data\":{\"entries\":[");
+        for (int i = 0; i < matched.size(); i++) {
+            LogEntry entry = matched.get(i);
+            if (entry.json == null) {
+                StringWriter buffer = new StringWriter();
+                writeEntry(new JsonWriter(buffer), entry);
+                entry.json = buffer.toString();
+            }
+            if (i > 0) frame.append(',');
+            frame.append(entry.json);
+        }
+        frame.append("],\"dropped\":").append(droppedSinceLast);
+        if (replay) frame.append(",\"replay\":true");
+        frame.append("}}");
+        server.broadcast(frame.toString(), targets);
+    }
+
+    private static void writeEntry(JsonWriter out, LogEntry entry) throws IOException {
+        out.beginObject();
+        out.name("seq").value(entry.seq);
+        out.name("time").value(entry.time);
+        out.name("level").value(entry.level);
+        out.name("logger").value(entry.logger);
+        out.name("message").value(entry.message);
+        out.endObject();
+    }
+}
@@ -0,0 +1,30 @@
+package cn.lemwood.serversee.api;
+
+/**
+ * 一条结构化的日志事件，在日志线程中创建后交给广播线程处理。
+ */
+final class LogEntry {
+    /**
+     * 事件来源，用于在 Log4j 与 JUL 同时捕获时去重
+     */
+    enum Origin { LOG4J, JUL }
+
+    final Origin origin;
+    final long time;
+    final String level;
+    final String logger;
+    final String message;
+
+    // 以下字段由广播线程在锁内写入
+    long seq;
+    String json;
+    byte[] packed;
+
+    LogEntry(Origin origin, long time, String level, String logger, String message) {
+        this.origin = origin;
+        this.time = time;
+        this.level = level;
+        this.logger = logger;
+        this.message = message;
+    }
+}
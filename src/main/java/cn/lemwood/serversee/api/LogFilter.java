@@ -0,0 +1,78 @@
+package cn.lemwood.serversee.api;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 日志订阅者的过滤条件: 最低日志级别与可选的 logger 名称前缀。
+ * 过滤条件相同的订阅者共享同一帧，因此实现了 equals / hashCode。
+ */
+final class LogFilter {
+    static final LogFilter ALL = new LogFilter(0, new String[0]);
+
+    private final int minLevel;
+    private final String[] loggerPrefixes;
+
+    LogFilter(int minLevel, String[] loggerPrefixes) {
+        this.minLevel = minLevel;
+        this.loggerPrefixes = loggerPrefixes;
+    }
+
+    static LogFilter of(String minLevel, String[] loggerPrefixes) {
+        int level = minLevel == null ? 0 : rank(minLevel);
+        String[] prefixes = loggerPrefixes == null ? new String[0] : loggerPrefixes.clone();
+        Arrays.sort(prefixes);
+        return new LogFilter(level, prefixes);
+    }
+
+    boolean accepts(LogEntry entry) {
+        if (rank(entry.level) < minLevel) return false;
+        if (loggerPrefixes.length == 0) return true;
+        String logger = entry.logger == null ? "" : entry.logger;
+        for (String prefix : loggerPrefixes) {
+            if (logger.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 将 Log4j 与 JUL 的级别名映射到统一的等级。大小写转换不受默认 Locale 影响 (土耳其语下 "info" 会变成 "İNFO")
+     */
+    static int rank(String level) {
+        switch (level.toUpperCase(Locale.ROOT)) {
+            case "TRACE":
+            case "FINEST":
+            case "FINER":
+            case "ALL":
+                return 0;
+            case "DEBUG":
+            case "FINE":
+            case "CONFIG":
+                return 1;
+            case "WARN":
+            case "WARNING":
+                return 3;
+            case "ERROR":
+            case "SEVERE":
+                return 4;
+            case "FATAL":
+            case "OFF":
+                return 5;
+            default:
+                return 2;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LogFilter)) return false;
+        LogFilter other = (LogFilter) o;
+        return minLevel == other.minLevel && Arrays.equals(loggerPrefixes, other.loggerPrefixes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * minLevel + Arrays.hashCode(loggerPrefixes);
+    }
+}
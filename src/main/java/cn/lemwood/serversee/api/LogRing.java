@@ -0,0 +1,59 @@
+package cn.lemwood.serversee.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 最近日志事件的定长环形缓冲区，每条事件按写入顺序分配递增的序号。
+ * 序号从创建时的毫秒时间戳 * 1000 开始，插件重载后新的序号仍大于重载前发出的序号
+ * (只要此前平均每毫秒不超过 1000 条)，客户端保存的旧序号不会落入新的区间。
+ * 非线程安全，由 {@link LogBroadcaster} 加锁访问。
+ */
+final class LogRing {
+    private final LogEntry[] entries;
+    private final long origin;
+    // 下一条事件的序号
+    private long nextSeq;
+
+    LogRing(int capacity) {
+        this.entries = new LogEntry[capacity];
+        this.origin = System.currentTimeMillis() * 1000;
+        this.nextSeq = origin;
+    }
+
+    void append(LogEntry entry) {
+        entry.seq = nextSeq;
+        entries[(int) (nextSeq % entries.length)] = entry;
+        nextSeq++;
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * 最新一条事件的序号，没有事件时为 origin - 1
+     */
+    long lastSeq() {
+        return nextSeq - 1;
+    }
+
+    /**
+     * 缓冲区中最早一条事件的序号
+     */
+    long firstSeq() {
+        return Math.max(origin, nextSeq - entries.length);
+    }
+
+    /**
+     * 返回序号大于 seq 的事件 (按时间正序)，最多 max 条，超出时保留最新的
+     */
+    List<LogEntry> since(long seq, int max) {
+        long from = Math.max(Math.max(seq + 1, firstSeq()), nextSeq - max);
+        List<LogEntry> result = new ArrayList<>((int) Math.max(0, nextSeq - from));
+        for (long s = from; s < nextSeq; s++) {
+            result.add(entries[(int) (s % entries.length)]);
+        }
+        return result;
+    }
+}
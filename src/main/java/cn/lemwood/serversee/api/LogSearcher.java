@@ -0,0 +1,242 @@
+package cn.lemwood.serversee.api;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 在 latest.log 与滚动归档 (yyyy-MM-dd-n.log.gz) 中按时间正序搜索日志。
+ * 文件逐行流式解压与匹配，不会整体载入内存。搜索在调用线程中同步执行 (即 RequestDispatcher 的工作线程)，
+ * 因此受 action 并发上限与请求超时约束，超时中断线程后扫描随即停止。
+ * 每个归档扫描完成后记录其首末时间，之后按时间窗口查询时可直接跳过不相关的文件。
+ */
+class LogSearcher {
+    private static final Pattern ARCHIVE_NAME = Pattern.compile("^(\\d{4}-\\d{2}-\\d{2})-(\\d+)\\.log\\.gz$");
+    // [12:34:56] [Server thread/INFO]: ...
+    static final Pattern LINE_HEADER = Pattern.compile("^\\[(\\d{2}):(\\d{2}):(\\d{2})] \\[[^\\]]*/([A-Z]+)]");
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final String LATEST = "latest.log";
+
+    /**
+     * 一次搜索的条件
+     */
+    static final class Query {
+        Pattern pattern;
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        int minLevel = 0;
+        int limit = 100;
+        String cursorFile;
+        long cursorLine = 0;
+    }
+
+    static final class Match {
+        final String file;
+        final long line;
+        final long time;
+        final String level;
+        final String text;
+
+        Match(String file, long line, long time, String level, String text) {
+            this.file = file;
+            this.line = line;
+            this.time = time;
+            this.level = level;
+            this.text = text;
+        }
+    }
+
+    static final class Result {
+        final List<Match> matches = new ArrayList<>();
+        String nextCursor;
+        int scannedFiles;
+    }
+
+    /**
+     * 已完整扫描过的归档的时间范围，归档不会再变化，因此以文件名和大小为键
+     */
+    private static final class FileSpan {
+        final long size;
+        final long first;
+        final long last;
+
+        FileSpan(long size, long first, long last) {
+            this.size = size;
+            this.first = first;
+            this.last = last;
+        }
+    }
+
+    // 每读取这么多行检查一次线程是否已被中断
+    private static final int INTERRUPT_CHECK_LINES = 4096;
+
+    private final Path logDir;
+    private final Map<String, FileSpan> spans = new ConcurrentHashMap<>();
+
+    LogSearcher(Path logDir) {
+        this.logDir = logDir;
+    }
+
+    /**
+     * 执行一次搜索
+     * @throws InterruptedIOException 线程被中断 (请求超时)
+     */
+    Result search(Query query) throws IOException {
+        Result result = new Result();
+        boolean started = query.cursorFile == null;
+        for (LogFile file : listFiles()) {
+            if (!started) {
+                if (!file.name.equals(query.cursorFile)) continue;
+                started = true;
+            }
+            long skipLines = file.name.equals(query.cursorFile) ? query.cursorLine : 0;
+            if (skipLines == 0 && !mayContain(file, query)) continue;
+
+            result.scannedFiles++;
+            if (scanFile(file, query, skipLines, result)) {
+                return result;
+            }
+        }
+        if (!started) {
+            throw new IOException("Unknown cursor file: " + query.cursorFile);
+        }
+        return result;
+    }
+
+    /**
+     * 扫描单个文件，命中数达到上限时返回 true 并设置游标
+     */
+    private boolean scanFile(LogFile file, Query query, long skipLines, Result result) throws IOException {
+        long dayStart = file.date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long lastTimeOfDay = -1;
+        long time = dayStart;
+        long first = Long.MAX_VALUE;
+        String level = "INFO";
+        long lineNo = 0;
+
+        try (InputStream in = open(file);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (lineNo % INTERRUPT_CHECK_LINES == 0 && Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Search interrupted");
+                }
+                Matcher header = LINE_HEADER.matcher(line);
+                if (header.find()) {
+                    long timeOfDay = (Long.parseLong(header.group(1)) * 3600
+                            + Long.parseLong(header.group(2)) * 60
+                            + Long.parseLong(header.group(3))) * 1000;
+                    // 时间回退说明跨过了午夜
+                    if (timeOfDay < lastTimeOfDay) {
+                        dayStart += DAY_MS;
+                    }
+                    lastTimeOfDay = timeOfDay;
+                    time = dayStart + timeOfDay;
+                    level = header.group(4);
+                    if (first == Long.MAX_VALUE) first = time;
+                }
+                // 没有头部的行 (如堆栈) 沿用上一行的时间与级别
+                if (lineNo <= skipLines || time < query.from) continue;
+                if (time > query.to) {
+                    // 文件按时间正序排列，之后的内容都不会落在窗口内
+                    result.nextCursor = null;
+                    return true;
+                }
+                if (LogFilter.rank(level) < query.minLevel) continue;
+                if (query.pattern != null && !query.pattern.matcher(line).find()) continue;
+
+                if (result.matches.size() == query.limit) {
+                    result.nextCursor = file.name + "|" + (lineNo - 1);
+                    return true;
+                }
+                result.matches.add(new Match(file.name, lineNo, time, level, line));
+            }
+        }
+        if (file.archive && skipLines == 0 && first != Long.MAX_VALUE) {
+            spans.put(file.name, new FileSpan(file.size, first, time));
+        }
+        return false;
+    }
+
+    private boolean mayContain(LogFile file, Query query) {
+        FileSpan span = spans.get(file.name);
+        if (span != null && span.size == file.size) {
+            return span.last >= query.from && span.first <= query.to;
+        }
+        // 没有索引时按文件日期粗略判断，单个文件最多跨越到次日
+        long dayStart = file.date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return dayStart + 2 * DAY_MS >= query.from && dayStart <= query.to;
+    }
+
+    private InputStream open(LogFile file) throws IOException {
+        InputStream in = Files.newInputStream(file.path);
+        return file.archive ? new GZIPInputStream(in, 64 * 1024) : in;
+    }
+
+    /**
+     * 按时间正序列出日志文件，latest.log 排在最后
+     */
+    private List<LogFile> listFiles() throws IOException {
+        List<LogFile> files = new ArrayList<>();
+        if (!Files.isDirectory(logDir)) return files;
+        try (Stream<Path> stream = Files.list(logDir)) {
+            stream.forEach(path -> {
+                Matcher m = ARCHIVE_NAME.matcher(path.getFileName().toString());
+                if (!m.matches()) return;
+                try {
+                    files.add(new LogFile(path, LocalDate.parse(m.group(1)), Integer.parseInt(m.group(2)), true));
+                } catch (DateTimeParseException | IOException ignored) {
+                }
+            });
+        }
+        files.sort((a, b) -> {
+            int c = a.date.compareTo(b.date);
+            return c != 0 ? c : Integer.compare(a.index, b.index);
+        });
+
+        Path latest = logDir.resolve(LATEST);
+        if (Files.exists(latest)) {
+            BasicFileAttributes attrs = Files.readAttributes(latest, BasicFileAttributes.class);
+            // latest.log 在启动和跨日时滚动，以创建时间所在日期为起点
+            LocalDate date = attrs.creationTime().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+            files.add(new LogFile(latest, date, Integer.MAX_VALUE, false));
+        }
+        return files;
+    }
+
+    private static final class LogFile {
+        final Path path;
+        final String name;
+        final LocalDate date;
+        final int index;
+        final boolean archive;
+        final long size;
+
+        LogFile(Path path, LocalDate date, int index, boolean archive) throws IOException {
+            this.path = path;
+            this.name = path.getFileName().toString();
+            this.date = date;
+            this.index = index;
+            this.archive = archive;
+            this.size = Files.size(path);
+        }
+    }
+}
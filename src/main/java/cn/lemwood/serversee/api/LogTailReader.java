@@ -0,0 +1,134 @@
+package cn.lemwood.serversee.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 从文件末尾向前按块读取日志行。
+ * 每次读取 64KB，在字节层面按 '\n' 切分后再整体解码，
+ * 由于 UTF-8 多字节序列中不会出现 '\n'，因此不会截断字符。
+ * 支持跳过末尾的若干行，便于客户端向前翻页。
+ */
+final class LogTailReader {
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * 一页日志，lines 按时间正序排列
+     */
+    static final class Page {
+        final List<String> lines;
+        final boolean hasMore;
+
+        Page(List<String> lines, boolean hasMore) {
+            this.lines = lines;
+            this.hasMore = hasMore;
+        }
+    }
+
+    private LogTailReader() {}
+
+    /**
+     * 跳过末尾 offset 行后读取 limit 行，空行不计数
+     */
+    static Page read(Path file, int offset, int limit) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (limit <= 0 || !Files.exists(file)) {
+            return new Page(lines, false);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+            byte[] block = buffer.array();
+            // 跨块的行: 已读到的行尾部分，按文件中的顺序保存
+            ByteArrayOutputStream carry = new ByteArrayOutputStream();
+            int skipped = 0;
+            long pos = channel.size();
+
+            while (pos > 0) {
+                int len = (int) Math.min(BLOCK_SIZE, pos);
+                pos -= len;
+                buffer.clear().limit(len);
+                int read = 0;
+                while (read < len) {
+                    int n = channel.read(buffer, pos + read);
+                    if (n < 0) break;
+                    read += n;
+                }
+
+                int end = len;
+                for (int i = len - 1; i >= 0; i--) {
+                    if (block[i] != '\n') continue;
+                    byte[] line = joinLine(block, i + 1, end, carry);
+                    end = i;
+                    if (line.length == 0) continue;
+                    if (skipped < offset) {
+                        skipped++;
+                        continue;
+                    }
+                    if (lines.size() == limit) {
+                        // 还有更早的行
+                        Collections.reverse(lines);
+                        return new Page(lines, true);
+                    }
+                    lines.add(decode(line));
+                }
+                // 本块开头的残余部分属于更早的行，留到下一块拼接
+                byte[] rest = carry.toByteArray();
+                carry.reset();
+                carry.write(block, 0, end);
+                carry.write(rest, 0, rest.length);
+            }
+
+            // 文件第一行
+            byte[] first = trimTrailing(carry.toByteArray());
+            if (first.length > 0 && skipped >= offset) {
+                if (lines.size() == limit) {
+                    Collections.reverse(lines);
+                    return new Page(lines, true);
+                }
+                lines.add(decode(first));
+            }
+        }
+        Collections.reverse(lines);
+        return new Page(lines, false);
+    }
+
+    private static byte[] joinLine(byte[] block, int from, int to, ByteArrayOutputStream carry) {
+        byte[] line;
+        if (carry.size() == 0) {
+            line = new byte[to - from];
+            System.arraycopy(block, from, line, 0, line.length);
+        } else {
+            byte[] rest = carry.toByteArray();
+            line = new byte[to - from + rest.length];
+            System.arraycopy(block, from, line, 0, to - from);
+            System.arraycopy(rest, 0, line, to - from, rest.length);
+            carry.reset();
+        }
+        return trimTrailing(line);
+    }
+
+    private static byte[] trimTrailing(byte[] line) {
+        int len = line.length;
+        while (len > 0 && (line[len - 1] == '\r' || line[len - 1] == ' ' || line[len - 1] == '\t')) {
+            len--;
+        }
+        if (len == line.length) return line;
+        byte[] trimmed = new byte[len];
+        System.arraycopy(line, 0, trimmed, 0, len);
+        return trimmed;
+    }
+
+    private static String decode(byte[] line) {
+        return new String(line, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,102 @@
+package cn.lemwood.serversee.api;
+
+import cn.lemwood.serversee.ServerSee;
+import org.bukkit.Bukkit;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 把需要在主线程执行的 API 操作交给主线程。
+ * 各个工作线程提交的操作先进入无锁队列，有待执行的操作时才调度一个同步任务，
+ * 该任务在一个 tick 内按提交顺序执行队列中的操作，超出时间预算的部分顺延到下一 tick，
+ * 执行结果通过 CompletableFuture 交还给提交方。
+ */
+class MainThreadBus implements Runnable {
+    private final Queue<Operation<?>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final long budgetNanos;
+    private volatile boolean stopped = false;
+
+    MainThreadBus(double budgetMs) {
+        this.budgetNanos = (long) (Math.max(0.1, budgetMs) * 1_000_000L);
+    }
+
+    /**
+     * 提交一个主线程操作。返回的 future 在执行前被取消时，该操作会被跳过
+     */
+    <T> CompletableFuture<T> submit(Callable<T> action) {
+        Operation<T> operation = new Operation<>(action);
+        if (stopped) {
+            operation.future.completeExceptionally(new RejectedExecutionException("Plugin is disabling"));
+            return operation.future;
+        }
+        queue.add(operation);
+        if (stopped && queue.remove(operation)) {
+            operation.future.completeExceptionally(new RejectedExecutionException("Plugin is disabling"));
+            return operation.future;
+        }
+        schedule();
+        return operation.future;
+    }
+
+    private void schedule() {
+        if (stopped || !scheduled.compareAndSet(false, true)) return;
+        try {
+            Bukkit.getScheduler().runTask(ServerSee.getInstance(), this);
+        } catch (RuntimeException e) {
+            // 插件正在卸载，无法再调度任务
+            scheduled.set(false);
+            rejectPending();
+        }
+    }
+
+    @Override
+    public void run() {
+        long deadline = System.nanoTime() + budgetNanos;
+        Operation<?> operation;
+        // 每 tick 至少执行一个操作，保证单个耗时操作不会让队列永远无法推进
+        while ((operation = queue.poll()) != null) {
+            operation.run();
+            if (System.nanoTime() - deadline >= 0) break;
+        }
+        scheduled.set(false);
+        // 在主线程中调度的任务从下一 tick 开始执行
+        if (!queue.isEmpty()) schedule();
+    }
+
+    void stop() {
+        stopped = true;
+        rejectPending();
+    }
+
+    private void rejectPending() {
+        Operation<?> operation;
+        while ((operation = queue.poll()) != null) {
+            operation.future.completeExceptionally(new RejectedExecutionException("Plugin is disabling"));
+        }
+    }
+
+    private static final class Operation<T> {
+        final Callable<T> action;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Operation(Callable<T> action) {
+            this.action = action;
+        }
+
+        void run() {
+            // 提交方已超时放弃
+            if (future.isDone()) return;
+            try {
+                future.complete(action.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+}
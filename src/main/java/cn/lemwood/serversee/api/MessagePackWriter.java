@@ -0,0 +1,399 @@
+package cn.lemwood.serversee.api;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 以 JsonWriter 的接口输出 MessagePack，现有的 TypeAdapter 与手写的流式输出无需修改即可复用。
+ * MessagePack 的数组与 map 头部需要元素个数，而流式写入时事先并不知道，
+ * 因此内容先写入缓冲区，同时记录每个容器头部的位置与元素数，
+ * 在 {@link #toByteArray()} 时一次性插入最短形式的头部，整体为线性时间。
+ */
+final class MessagePackWriter extends JsonWriter {
+    private byte[] buffer = new byte[256];
+    private int size = 0;
+
+    // 已打开过的容器，按打开顺序 (也就是头部位置顺序) 排列
+    private int[] headerPos = new int[16];
+    private int[] headerCount = new int[16];
+    private boolean[] headerMap = new boolean[16];
+    private int headers = 0;
+
+    // 当前嵌套路径上的容器下标
+    private int[] stack = new int[16];
+    private int depth = 0;
+
+    private String pendingName;
+
+    MessagePackWriter() {
+        super(Writer.nullWriter());
+    }
+
+    /**
+     * 返回编码结果，所有容器必须已经关闭
+     */
+    byte[] toByteArray() {
+        if (depth != 0 || pendingName != null) {
+            throw new IllegalStateException("Incomplete document");
+        }
+        int total = size;
+        for (int i = 0; i < headers; i++) {
+            total += headerSize(headerCount[i]);
+        }
+        byte[] out = new byte[total];
+        int src = 0;
+        int dst = 0;
+        for (int i = 0; i < headers; i++) {
+            int len = headerPos[i] - src;
+            System.arraycopy(buffer, src, out, dst, len);
+            dst += len;
+            src = headerPos[i];
+            dst = writeHeader(out, dst, headerCount[i], headerMap[i]);
+        }
+        System.arraycopy(buffer, src, out, dst, size - src);
+        return out;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        open(false);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        close(false);
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        open(true);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        close(true);
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (name == null) throw new NullPointerException("name == null");
+        if (pendingName != null || depth == 0 || !headerMap[stack[depth - 1]]) {
+            throw new IllegalStateException("Unexpected name: " + name);
+        }
+        pendingName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        if (pendingName != null && !getSerializeNulls()) {
+            // 与 JsonWriter 一致: 不序列化 null 时连同字段名一起省略
+            pendingName = null;
+            return this;
+        }
+        beforeValue();
+        writeByte(0xc0);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) return nullValue();
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) return nullValue();
+        writeElement(JsonParser.parseString(value));
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        writeByte(value ? 0xc3 : 0xc2);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Boolean value) throws IOException {
+        if (value == null) return nullValue();
+        return value(value.booleanValue());
+    }
+
+    @Override
+    public JsonWriter value(float value) throws IOException {
+        return value((double) value);
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        beforeValue();
+        ensure(9);
+        buffer[size++] = (byte) 0xcb;
+        writeLong(Double.doubleToLongBits(value));
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        writeInteger(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) return nullValue();
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+                || value instanceof AtomicInteger || value instanceof AtomicLong) {
+            return value(value.longValue());
+        }
+        if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            return value(value.doubleValue());
+        }
+        if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+            return value(value.longValue());
+        }
+        // LazilyParsedNumber 等: 按文本判断是整数还是浮点数
+        String text = value.toString();
+        try {
+            return value(Long.parseLong(text));
+        } catch (NumberFormatException e) {
+            return value(Double.parseDouble(text));
+        }
+    }
+
+    /**
+     * 写入一段已经编码好的 MessagePack 值
+     */
+    MessagePackWriter rawValue(byte[] packed) throws IOException {
+        beforeValue();
+        ensure(packed.length);
+        System.arraycopy(packed, 0, buffer, size, packed.length);
+        size += packed.length;
+        return this;
+    }
+
+    /**
+     * 写入二进制数据 (bin 类型)
+     */
+    MessagePackWriter binaryValue(byte[] data, int off, int len) throws IOException {
+        beforeValue();
+        ensure(5 + len);
+        if (len < 256) {
+            buffer[size++] = (byte) 0xc4;
+            buffer[size++] = (byte) len;
+        } else if (len < 65536) {
+            buffer[size++] = (byte) 0xc5;
+            writeShort(len);
+        } else {
+            buffer[size++] = (byte) 0xc6;
+            writeInt(len);
+        }
+        System.arraycopy(data, off, buffer, size, len);
+        size += len;
+        return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void open(boolean map) throws IOException {
+        beforeValue();
+        if (headers == headerPos.length) {
+            int n = headers * 2;
+            headerPos = Arrays.copyOf(headerPos, n);
+            headerCount = Arrays.copyOf(headerCount, n);
+            headerMap = Arrays.copyOf(headerMap, n);
+        }
+        headerPos[headers] = size;
+        headerCount[headers] = 0;
+        headerMap[headers] = map;
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = headers++;
+    }
+
+    private void close(boolean map) {
+        if (depth == 0 || headerMap[stack[depth - 1]] != map || pendingName != null) {
+            throw new IllegalStateException("Nesting problem");
+        }
+        depth--;
+    }
+
+    /**
+     * 写值之前: map 中先写出字段名，并为当前容器计数
+     */
+    private void beforeValue() {
+        if (depth == 0) return;
+        int current = stack[depth - 1];
+        if (headerMap[current]) {
+            if (pendingName == null) throw new IllegalStateException("Expected name");
+            writeString(pendingName);
+            pendingName = null;
+        }
+        headerCount[current]++;
+    }
+
+    private void writeElement(JsonElement element) throws IOException {
+        if (element.isJsonNull()) {
+            nullValue();
+        } else if (element.isJsonArray()) {
+            beginArray();
+            for (JsonElement e : element.getAsJsonArray()) {
+                writeElement(e);
+            }
+            endArray();
+        } else if (element.isJsonObject()) {
+            beginObject();
+            for (Map.Entry<String, JsonElement> e : element.getAsJsonObject().entrySet()) {
+                name(e.getKey());
+                writeElement(e.getValue());
+            }
+            endObject();
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                value(primitive.getAsBoolean());
+            } else if (primitive.isNumber()) {
+                value(primitive.getAsNumber());
+            } else {
+                value(primitive.getAsString());
+            }
+        }
+    }
+
+    private void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int len = bytes.length;
+        ensure(5 + len);
+        if (len < 32) {
+            buffer[size++] = (byte) (0xa0 | len);
+        } else if (len < 256) {
+            buffer[size++] = (byte) 0xd9;
+            buffer[size++] = (byte) len;
+        } else if (len < 65536) {
+            buffer[size++] = (byte) 0xda;
+            writeShort(len);
+        } else {
+            buffer[size++] = (byte) 0xdb;
+            writeInt(len);
+        }
+        System.arraycopy(bytes, 0, buffer, size, len);
+        size += len;
+    }
+
+    private void writeInteger(long v) {
+        ensure(9);
+        if (v >= 0) {
+            if (v < 128) {
+                buffer[size++] = (byte) v;
+            } else if (v < 256) {
+                buffer[size++] = (byte) 0xcc;
+                buffer[size++] = (byte) v;
+            } else if (v < 65536) {
+                buffer[size++] = (byte) 0xcd;
+                writeShort((int) v);
+            } else if (v < 0x100000000L) {
+                buffer[size++] = (byte) 0xce;
+                writeInt((int) v);
+            } else {
+                buffer[size++] = (byte) 0xcf;
+                writeLong(v);
+            }
+        } else {
+            if (v >= -32) {
+                buffer[size++] = (byte) v;
+            } else if (v >= Byte.MIN_VALUE) {
+                buffer[size++] = (byte) 0xd0;
+                buffer[size++] = (byte) v;
+            } else if (v >= Short.MIN_VALUE) {
+                buffer[size++] = (byte) 0xd1;
+                writeShort((int) v);
+            } else if (v >= Integer.MIN_VALUE) {
+                buffer[size++] = (byte) 0xd2;
+                writeInt((int) v);
+            } else {
+                buffer[size++] = (byte) 0xd3;
+                writeLong(v);
+            }
+        }
+    }
+
+    private void writeByte(int b) {
+        ensure(1);
+        buffer[size++] = (byte) b;
+    }
+
+    private void writeShort(int v) {
+        buffer[size++] = (byte) (v >>> 8);
+        buffer[size++] = (byte) v;
+    }
+
+    private void writeInt(int v) {
+        buffer[size++] = (byte) (v >>> 24);
+        buffer[size++] = (byte) (v >>> 16);
+        buffer[size++] = (byte) (v >>> 8);
+        buffer[size++] = (byte) v;
+    }
+
+    private void writeLong(long v) {
+        writeInt((int) (v >>> 32));
+        writeInt((int) v);
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+
+    private static int headerSize(int count) {
+        if (count < 16) return 1;
+        if (count < 65536) return 3;
+        return 5;
+    }
+
+    private static int writeHeader(byte[] out, int pos, int count, boolean map) {
+        if (count < 16) {
+            out[pos++] = (byte) ((map ? 0x80 : 0x90) | count);
+        } else if (count < 65536) {
+            out[pos++] = (byte) (map ? 0xde : 0xdc);
+            out[pos++] = (byte) (count >>> 8);
+            out[pos++] = (byte) count;
+        } else {
+            out[pos++] = (byte) (map ? 0xdf : 0xdd);
+            out[pos++] = (byte) (count >>> 24);
+            out[pos++] = (byte) (count >>> 16);
+            out[pos++] = (byte) (count >>> 8);
+            out[pos++] = (byte) count;
+        }
+        return pos;
+    }
+}
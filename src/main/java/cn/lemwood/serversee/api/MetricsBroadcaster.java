@@ -0,0 +1,100 @@
+package cn.lemwood.serversee.api;
+
+import cn.lemwood.serversee.ServerSee;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.java_websocket.WebSocket;
+import org.java_websocket.server.WebSocketServer;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * 指标推送订阅。
+ * 相同推送间隔的订阅者共用一个异步定时任务: 每个周期只采集一次快照，
+ * 每种编码格式只序列化一次，再把同一帧广播给该格式下的全部订阅者。
+ */
+class MetricsBroadcaster {
+    private static final long TICK_MS = 50;
+    private static final long MAX_INTERVAL_TICKS = 20L * 60;
+
+    private final WebSocketServer server;
+    private final Supplier<Object> snapshotSupplier;
+    private final BiFunction<WireFormat, Object, FrameBuffer> pushEncoder;
+    private final long minIntervalTicks;
+
+    // 推送间隔 (tick) -> 订阅组
+    private final Map<Long, Group> groups = new ConcurrentHashMap<>();
+    private final Map<WebSocket, Long> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * @param snapshotSupplier 采集一次指标快照
+     * @param pushEncoder 按格式把快照编码为一帧完整的推送消息
+     */
+    MetricsBroadcaster(WebSocketServer server, Supplier<Object> snapshotSupplier,
+                       BiFunction<WireFormat, Object, FrameBuffer> pushEncoder, long minIntervalMs) {
+        this.server = server;
+        this.snapshotSupplier = snapshotSupplier;
+        this.pushEncoder = pushEncoder;
+        this.minIntervalTicks = Math.max(1, minIntervalMs / TICK_MS);
+    }
+
+    /**
+     * 订阅指标推送，同一连接重复订阅会替换原有间隔
+     * @return 实际生效的推送间隔 (毫秒)
+     */
+    long subscribe(WebSocket conn, long intervalMs) {
+        long ticks = Math.min(MAX_INTERVAL_TICKS, Math.max(minIntervalTicks, Math.round(intervalMs / (double) TICK_MS)));
+        unsubscribe(conn);
+        synchronized (groups) {
+            groups.computeIfAbsent(ticks, Group::new).subscribers.add(conn);
+        }
+        subscriptions.put(conn, ticks);
+        return ticks * TICK_MS;
+    }
+
+    boolean unsubscribe(WebSocket conn) {
+        Long ticks = subscriptions.remove(conn);
+        if (ticks == null) return false;
+        synchronized (groups) {
+            Group group = groups.get(ticks);
+            if (group != null) {
+                group.subscribers.remove(conn);
+                if (group.subscribers.isEmpty()) {
+                    group.task.cancel();
+                    groups.remove(ticks);
+                }
+            }
+        }
+        return true;
+    }
+
+    private final class Group implements Runnable {
+        private final Set<WebSocket> subscribers = ConcurrentHashMap.newKeySet();
+        private final BukkitTask task;
+
+        Group(long ticks) {
+            this.task = Bukkit.getScheduler().runTaskTimerAsynchronously(ServerSee.getInstance(), this, ticks, ticks);
+        }
+
+        @Override
+        public void run() {
+            if (subscribers.isEmpty()) return;
+            Map<WireFormat, List<WebSocket>> byFormat = new EnumMap<>(WireFormat.class);
+            for (WebSocket conn : subscribers) {
+                byFormat.computeIfAbsent(ClientSession.formatOf(conn), f -> new ArrayList<>()).add(conn);
+            }
+            Object snapshot = snapshotSupplier.get();
+            for (Map.Entry<WireFormat, List<WebSocket>> entry : byFormat.entrySet()) {
+                // WebSocketServer.broadcast 只会为每种协议草案编码一次帧
+                pushEncoder.apply(entry.getKey(), snapshot).broadcast(server, entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package cn.lemwood.serversee.api;
+
+import cn.lemwood.serversee.ServerSee;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 玩家名到 UUID 的解析。
+ * 依次查询内存缓存、在线玩家与白名单 (在主线程中执行，不涉及网络)，
+ * 都没有时按服务器模式计算离线 UUID 或在独立线程中查询 Mojang API。
+ * 结果按玩家名缓存，同一玩家名的并发查询合并为一次，主线程永远不会等待网络请求。
+ */
+class ProfileResolver implements Listener {
+    private static final String LOOKUP_URL = "https://api.mojang.com/users/profiles/minecraft/";
+    private static final int MAX_ENTRIES = 4096;
+    // 查无此人的结果只缓存较短时间，避免玩家刚注册时一直查不到
+    private static final long NEGATIVE_TTL_MS = 60_000;
+
+    private final MainThreadBus mainThread;
+    private final boolean onlineUuids;
+    private final long ttlMs;
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<UUID>> inflight = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    ProfileResolver(MainThreadBus mainThread) {
+        this.mainThread = mainThread;
+        String mode = ServerSee.getInstance().getConfig().getString("profile-lookup.mode", "auto");
+        if ("online".equalsIgnoreCase(mode)) {
+            this.onlineUuids = true;
+        } else if ("offline".equalsIgnoreCase(mode)) {
+            this.onlineUuids = false;
+        } else {
+            this.onlineUuids = Bukkit.getOnlineMode();
+        }
+        this.ttlMs = Math.max(0, ServerSee.getInstance().getConfig().getLong("profile-lookup.cache-ttl-seconds", 3600)) * 1000;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "ServerSee-ProfileLookup-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 解析玩家名，玩家不存在时结果为 null。
+     * 返回的 future 可以单独取消，不影响合并在一起的其它查询
+     */
+    CompletableFuture<UUID> resolve(String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        Cached cached = cache.get(key);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            return CompletableFuture.completedFuture(cached.uuid);
+        }
+        CompletableFuture<UUID> shared = new CompletableFuture<>();
+        CompletableFuture<UUID> existing = inflight.putIfAbsent(key, shared);
+        if (existing != null) return existing.copy();
+
+        mainThread.submit(() -> findLocal(name))
+                .thenCompose(local -> {
+                    if (local != null) return CompletableFuture.completedFuture(local);
+                    if (!onlineUuids) return CompletableFuture.completedFuture(offlineUuid(name));
+                    return CompletableFuture.supplyAsync(() -> lookup(name), executor);
+                })
+                .whenComplete((uuid, error) -> {
+                    if (error == null) put(key, uuid);
+                    inflight.remove(key, shared);
+                    if (error == null) {
+                        shared.complete(uuid);
+                    } else {
+                        shared.completeExceptionally(error);
+                    }
+                });
+        return shared.copy();
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        put(player.getName().toLowerCase(Locale.ROOT), player.getUniqueId());
+    }
+
+    /**
+     * 在主线程中执行: 只查询服务器内存中已有的玩家
+     */
+    private static UUID findLocal(String name) {
+        Player online = Bukkit.getPlayerExact(name);
+        if (online != null) return online.getUniqueId();
+        for (OfflinePlayer player : Bukkit.getWhitelistedPlayers()) {
+            if (name.equalsIgnoreCase(player.getName())) return player.getUniqueId();
+        }
+        return null;
+    }
+
+    private static UUID offlineUuid(String name) {
+        return UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static UUID lookup(String name) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(LOOKUP_URL
+                    + URLEncoder.encode(name, StandardCharsets.UTF_8)).openConnection();
+            connection.setRequestMethod("GET");
+            connection.setRequestProperty("User-Agent", "ServerSee-Plugin");
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(5000);
+
+            int code = connection.getResponseCode();
+            // 204 / 404 表示玩家不存在
+            if (code == 204 || code == 404) return null;
+            if (code != 200) throw new IOException("HTTP " + code);
+            try (InputStreamReader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                JsonObject profile = JsonParser.parseReader(reader).getAsJsonObject();
+                String id = profile.get("id").getAsString();
+                return new UUID(Long.parseUnsignedLong(id.substring(0, 16), 16), Long.parseUnsignedLong(id.substring(16), 16));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Profile lookup failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void put(String key, UUID uuid) {
+        if (cache.size() >= MAX_ENTRIES) {
+            long now = System.currentTimeMillis();
+            cache.values().removeIf(c -> c.expiresAt <= now);
+            if (cache.size() >= MAX_ENTRIES) cache.clear();
+        }
+        cache.put(key, new Cached(uuid, System.currentTimeMillis() + (uuid != null ? ttlMs : Math.min(ttlMs, NEGATIVE_TTL_MS))));
+    }
+
+    private static final class Cached {
+        final UUID uuid;
+        final long expiresAt;
+
+        Cached(UUID uuid, long expiresAt) {
+            this.uuid = uuid;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package cn.lemwood.serversee.api;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶限流。
+ * 每个桶只保存一个 "令牌补满的时刻"，当前令牌数由它与当前时间之差推算，
+ * 补充与扣除在一次 CAS 中完成，不需要加锁，也不需要后台线程补充令牌。
+ * 已补满的桶与新建的桶完全等价，因此可以随时移除，不会丢失限流状态。
+ */
+final class RateLimiter {
+    private final long capacity;
+    // 补充一个令牌所需的纳秒数
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param capacity 桶容量，即允许的突发量
+     * @param refillPerSecond 每秒补充的令牌数
+     */
+    RateLimiter(long capacity, double refillPerSecond) {
+        this.capacity = Math.max(1, capacity);
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(0.001, refillPerSecond)));
+        this.burstNanos = this.capacity * intervalNanos;
+    }
+
+    Bucket newBucket() {
+        return new Bucket(System.nanoTime());
+    }
+
+    /**
+     * 按 key 取得共享的桶，如 IP
+     */
+    Bucket bucket(String key) {
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) return bucket;
+        return buckets.computeIfAbsent(key, k -> newBucket());
+    }
+
+    /**
+     * 尝试从桶中取出 cost 个令牌
+     * @return 0 表示成功；否则为令牌足够前还需等待的纳秒数，此时不扣除令牌
+     */
+    long tryAcquire(Bucket bucket, int cost) {
+        long need = need(cost);
+        while (true) {
+            long now = System.nanoTime();
+            long fullAt = bucket.fullAt.get();
+            long base = fullAt - now > 0 ? fullAt : now;
+            long next = base + need;
+            long over = next - now - burstNanos;
+            if (over > 0) return over;
+            if (bucket.fullAt.compareAndSet(fullAt, next)) return 0;
+        }
+    }
+
+    /**
+     * 与 tryAcquire 相同的判断，但不扣除令牌
+     * @return 0 表示当前令牌足够；否则为还需等待的纳秒数
+     */
+    long waitFor(Bucket bucket, int cost) {
+        long now = System.nanoTime();
+        long fullAt = bucket.fullAt.get();
+        long base = fullAt - now > 0 ? fullAt : now;
+        return Math.max(0, base + need(cost) - now - burstNanos);
+    }
+
+    /**
+     * 归还刚由 tryAcquire 取出的 cost 个令牌
+     */
+    void refund(Bucket bucket, int cost) {
+        bucket.fullAt.addAndGet(-need(cost));
+    }
+
+    private long need(int cost) {
+        return Math.min(Math.max(1, cost), capacity) * intervalNanos;
+    }
+
+    /**
+     * 移除已经补满的桶。与并发的 tryAcquire 竞争时最多少计一次消耗
+     */
+    void evictIdle() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.fullAt.get() - now <= 0);
+    }
+
+    static final class Bucket {
+        // 令牌补满的时刻 (System.nanoTime)，当前令牌数 = (capacity * interval - (fullAt - now)) / interval
+        private final AtomicLong fullAt;
+
+        private Bucket(long now) {
+            this.fullAt = new AtomicLong(now);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package cn.lemwood.serversee.api;
+
+import cn.lemwood.serversee.ServerSee;
+import org.bukkit.configuration.ConfigurationSection;
+import org.java_websocket.WebSocket;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 把请求从 WebSocket 的 I/O 线程转交给有界的工作线程池执行。
+ * 支持虚拟线程的 JVM 上每个请求一个虚拟线程，否则使用固定大小的线程池。
+ * 排队中与执行中的请求总数、单个 action 的并发数都有上限，超出时立即拒绝，由调用方回复 busy；
+ * 执行超时的请求会被中断并回复超时，之后该请求的迟到响应会被丢弃。
+ */
+class RequestDispatcher {
+    /**
+     * 超时回调，在计时线程中调用
+     */
+    interface TimeoutListener {
+        void onTimeout(WebSocket conn, RequestHandle handle, String action);
+    }
+
+    private static final int RUNNING = 0;
+    private static final int RESPONDED = 1;
+    private static final int TIMED_OUT = 2;
+
+    private final ExecutorService executor;
+    private final ScheduledThreadPoolExecutor timer;
+    private final Semaphore pending;
+    private final Map<String, Semaphore> actionLimits = new HashMap<>();
+    private final Map<String, Long> actionTimeouts = new HashMap<>();
+    private final long defaultTimeoutMs;
+    private final TimeoutListener timeoutListener;
+
+    RequestDispatcher(TimeoutListener timeoutListener) {
+        this.timeoutListener = timeoutListener;
+        ConfigurationSection config = ServerSee.getInstance().getConfig();
+        this.pending = new Semaphore(Math.max(1, config.getInt("dispatch.max-pending", 256)));
+        this.defaultTimeoutMs = config.getLong("dispatch.timeout-ms", 30000);
+
+        ConfigurationSection limits = config.getConfigurationSection("dispatch.action-limits");
+        if (limits != null) {
+            for (String action : limits.getKeys(false)) {
+                actionLimits.put(action, new Semaphore(Math.max(1, limits.getInt(action))));
+            }
+        }
+        ConfigurationSection timeouts = config.getConfigurationSection("dispatch.action-timeouts");
+        if (timeouts != null) {
+            for (String action : timeouts.getKeys(false)) {
+                actionTimeouts.put(action, timeouts.getLong(action, defaultTimeoutMs));
+            }
+        }
+
+        ExecutorService virtual = config.getBoolean("dispatch.virtual-threads", true) ? createVirtualExecutor() : null;
+        if (virtual != null) {
+            this.executor = virtual;
+        } else {
+            int threads = Math.max(1, config.getInt("dispatch.threads", 4));
+            AtomicInteger counter = new AtomicInteger();
+            // 队列长度由 pending 信号量限制
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "ServerSee-Worker-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        this.timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "ServerSee-DispatchTimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * 通过反射使用 Java 21 的虚拟线程，插件本身仍按较低版本编译
+     */
+    private static ExecutorService createVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 提交一个请求
+     * @return 因排队已满或该 action 并发已满被拒绝时返回 false
+     */
+    boolean dispatch(WebSocket conn, String action, RequestHandle handle, Runnable handler) {
+        if (!pending.tryAcquire()) return false;
+        Semaphore actionLimit = actionLimits.get(action);
+        if (actionLimit != null && !actionLimit.tryAcquire()) {
+            pending.release();
+            return false;
+        }
+
+        Task task = new Task();
+        handle.task = task;
+        long timeoutMs = actionTimeouts.getOrDefault(action, defaultTimeoutMs);
+        task.timeout = timer.schedule(() -> {
+            if (task.state.compareAndSet(RUNNING, TIMED_OUT)) {
+                // 只中断正在执行的线程; 仍在排队的任务开始时会发现已超时并直接跳过
+                synchronized (task) {
+                    if (task.worker != null) task.worker.interrupt();
+                }
+                timeoutListener.onTimeout(conn, handle, action);
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        try {
+            executor.execute(() -> {
+                synchronized (task) {
+                    task.worker = Thread.currentThread();
+                }
+                try {
+                    if (task.state.get() == RUNNING) {
+                        handler.run();
+                    }
+                } finally {
+                    // 处理结束后不再触发超时，异步回复 (如日志搜索) 不受影响
+                    task.state.compareAndSet(RUNNING, RESPONDED);
+                    synchronized (task) {
+                        task.worker = null;
+                        // 清除超时中断标记，避免影响线程池中的下一个任务
+                        Thread.interrupted();
+                    }
+                    task.timeout.cancel(false);
+                    if (actionLimit != null) actionLimit.release();
+                    pending.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            task.timeout.cancel(false);
+            handle.task = null;
+            if (actionLimit != null) actionLimit.release();
+            pending.release();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 发送最终响应前调用。请求已超时 (已回复过超时) 时返回 false，调用方应丢弃该响应
+     */
+    boolean beginResponse(RequestHandle handle) {
+        Task task = handle.task;
+        if (task == null) return true;
+        return task.state.compareAndSet(RUNNING, RESPONDED) || task.state.get() == RESPONDED;
+    }
+
+    void shutdown() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    static final class Task {
+        final AtomicInteger state = new AtomicInteger(RUNNING);
+        volatile Thread worker;
+        volatile ScheduledFuture<?> timeout;
+    }
+}
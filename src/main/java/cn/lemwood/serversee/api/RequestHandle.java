@@ -0,0 +1,31 @@
+package cn.lemwood.serversee.api;
+
+/**
+ * 一个待回复的请求。调度状态直接挂在这个对象上，而不是按客户端提供的 id 查找，
+ * 同一连接上 id 缺省或重复的并发请求互不影响。
+ */
+final class RequestHandle {
+    private final String id;
+    // batch 子请求的响应交给所属 batch 的第 batchIndex 项，普通请求为 null
+    final BatchResponse batch;
+    final int batchIndex;
+    // 由 RequestDispatcher 提交时设置，未经调度 (在 I/O 线程中直接回复) 的请求为 null
+    volatile RequestDispatcher.Task task;
+
+    RequestHandle(String id) {
+        this(id, null, -1);
+    }
+
+    RequestHandle(String id, BatchResponse batch, int batchIndex) {
+        this.id = id;
+        this.batch = batch;
+        this.batchIndex = batchIndex;
+    }
+
+    /**
+     * 客户端提供的请求 ID，只用于写入响应，可能为 null
+     */
+    String getId() {
+        return id;
+    }
+}
@@ -0,0 +1,107 @@
+package cn.lemwood.serversee.api;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 只读接口的响应缓存，按编码格式分别保存已经编码好的 data 部分 (JSON 文本或 MessagePack 字节)。
+ * 命中时只需拼接响应头部并写出一帧；条目在过期或被事件失效后于下次请求时重建。
+ */
+class ResponseCache {
+    private static final class Key {
+        final String name;
+        final WireFormat format;
+
+        Key(String name, WireFormat format) {
+            this.name = name;
+            this.format = format;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return name.equals(other.name) && format == other.format;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + format.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        final Object encoded;
+        final long expiresAt;
+
+        Entry(Object encoded, long expiresAt) {
+            this.encoded = encoded;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMs;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // 每次失效加一，构建期间发生过失效的结果不能写入缓存
+    private final AtomicLong generation = new AtomicLong();
+
+    ResponseCache(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * 返回缓存的编码结果，缺失或过期时调用 loader 重建。
+     * 并发未命中时可能重复构建，但结果相同，不加锁以免阻塞其他请求。
+     * 构建开始后发生失效时，结果仍返回给本次请求，但不会留在缓存中
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(String name, WireFormat format, Supplier<T> loader) {
+        Key key = new Key(name, format);
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null && now < entry.expiresAt) {
+            hits.incrementAndGet();
+            return (T) entry.encoded;
+        }
+        misses.incrementAndGet();
+        long loadGeneration = generation.get();
+        T encoded = loader.get();
+        Entry loaded = new Entry(encoded, now + ttlMs);
+        entries.put(key, loaded);
+        // 先写入再检查: 检查之后才开始的失效必然会删除这个条目
+        if (generation.get() != loadGeneration) {
+            entries.remove(key, loaded);
+        }
+        return encoded;
+    }
+
+    void invalidate(String name) {
+        generation.incrementAndGet();
+        entries.keySet().removeIf(key -> key.name.equals(name));
+    }
+
+    void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getTtlMs() {
+        return ttlMs;
+    }
+}
@@ -0,0 +1,42 @@
+package cn.lemwood.serversee.api;
+
+import java.util.Locale;
+
+/**
+ * 服务器发往客户端的消息编码，在握手时协商，默认 JSON 文本帧。
+ * 客户端请求始终是 JSON 文本帧。
+ */
+enum WireFormat {
+    JSON("serversee.json"),
+    /**
+     * MessagePack 二进制帧，结构与 JSON 消息完全相同
+     */
+    MSGPACK("serversee.msgpack");
+
+    private final String subprotocol;
+
+    WireFormat(String subprotocol) {
+        this.subprotocol = subprotocol;
+    }
+
+    String getSubprotocol() {
+        return subprotocol;
+    }
+
+    /**
+     * 按子协议或查询参数 format=msgpack 选择编码
+     */
+    static WireFormat negotiate(String subprotocol, String resourceDescriptor) {
+        if (MSGPACK.subprotocol.equals(subprotocol)) return MSGPACK;
+        if (JSON.subprotocol.equals(subprotocol)) return JSON;
+        if (resourceDescriptor != null) {
+            int query = resourceDescriptor.indexOf('?');
+            if (query >= 0) {
+                for (String param : resourceDescriptor.substring(query + 1).split("&")) {
+                    if (param.toLowerCase(Locale.ROOT).equals("format=msgpack")) return MSGPACK;
+                }
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,103 @@
+package cn.lemwood.serversee.auth;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 防重放的 nonce 记录。
+ * nonce 按请求自带的时间戳分到固定宽度的时间桶中，桶排成一个环，覆盖时间戳允许的整个误差窗口；
+ * 同一 nonce 的重放必然带着相同的时间戳 (时间戳参与签名)，因此只需查找对应的一个桶。
+ * 时间桶移出窗口后整体丢弃，不需要逐条过期；记录总数达到上限时拒绝新请求，而不是放过重放。
+ */
+public class NonceCache {
+    public enum Result {
+        ACCEPTED,
+        REPLAYED,
+        FULL
+    }
+
+    private static final int BUCKET_SECONDS = 10;
+    private static final int MAX_NONCE_LENGTH = 128;
+
+    private final long windowSeconds;
+    private final int maxEntries;
+    private final AtomicReferenceArray<Bucket> slots;
+
+    /**
+     * @param windowSeconds 时间戳允许的误差 (秒)，与签名校验一致
+     * @param maxEntries 最多记录的 nonce 数
+     */
+    public NonceCache(long windowSeconds, int maxEntries) {
+        this.windowSeconds = windowSeconds;
+        this.maxEntries = Math.max(1, maxEntries);
+        // 覆盖 [now - window, now + window]，多留一个桶保证窗口内的桶不会互相覆盖
+        this.slots = new AtomicReferenceArray<>((int) (2 * windowSeconds / BUCKET_SECONDS) + 2);
+    }
+
+    /**
+     * 记录一个已通过签名校验的 nonce，调用方需已确认时间戳在窗口内
+     * @return 首次出现返回 ACCEPTED，重复返回 REPLAYED，记录已满返回 FULL
+     */
+    public Result record(String nonce, long timestampSeconds) {
+        if (nonce.length() > MAX_NONCE_LENGTH) return Result.FULL;
+        long epoch = Math.floorDiv(timestampSeconds, BUCKET_SECONDS);
+        Bucket bucket = bucket(epoch);
+        if (bucket == null) return Result.REPLAYED;
+        if (bucket.nonces.contains(nonce)) return Result.REPLAYED;
+        if (size(System.currentTimeMillis() / 1000) >= maxEntries) return Result.FULL;
+        if (!bucket.nonces.add(nonce)) return Result.REPLAYED;
+        bucket.count.incrementAndGet();
+        return Result.ACCEPTED;
+    }
+
+    /**
+     * 窗口内记录的 nonce 数
+     */
+    public int size(long nowSeconds) {
+        long oldest = Math.floorDiv(nowSeconds - windowSeconds, BUCKET_SECONDS);
+        int total = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            Bucket bucket = slots.get(i);
+            if (bucket != null && bucket.epoch >= oldest) total += bucket.count.get();
+        }
+        return total;
+    }
+
+    /**
+     * 释放已经移出窗口的时间桶，定期调用即可
+     */
+    public void sweep() {
+        long oldest = Math.floorDiv(System.currentTimeMillis() / 1000 - windowSeconds, BUCKET_SECONDS);
+        for (int i = 0; i < slots.length(); i++) {
+            Bucket bucket = slots.get(i);
+            if (bucket != null && bucket.epoch < oldest) slots.compareAndSet(i, bucket, null);
+        }
+    }
+
+    /**
+     * 取得 epoch 对应的时间桶，槽位上是更早的桶时用新桶替换。
+     * 槽位已被更新的桶占用时说明该时间戳早已过期，返回 null
+     */
+    private Bucket bucket(long epoch) {
+        int index = (int) Math.floorMod(epoch, (long) slots.length());
+        while (true) {
+            Bucket current = slots.get(index);
+            if (current != null && current.epoch == epoch) return current;
+            if (current != null && current.epoch > epoch) return null;
+            Bucket fresh = new Bucket(epoch);
+            if (slots.compareAndSet(index, current, fresh)) return fresh;
+        }
+    }
+
+    private static final class Bucket {
+        final long epoch;
+        final Set<String> nonces = ConcurrentHashMap.newKeySet();
+        final AtomicInteger count = new AtomicInteger();
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
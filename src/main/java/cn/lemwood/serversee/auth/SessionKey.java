@@ -0,0 +1,86 @@
+package cn.lemwood.serversee.auth;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * 通过 auth 握手签发给单个连接的短期会话密钥。
+ * 密钥本身从不发送: 服务器只返回随机的 salt，双方各自用共享的 Token 计算 HMAC-SHA256(token, salt) 作为会话密钥，
+ * 能读取连接内容的人拿不到密钥。会话有效期内，敏感操作只需用会话密钥对 seq + action + data_json 计算 HMAC，
+ * seq 必须严格递增，以此代替 timestamp 与 nonce 防止重放；其它操作不需要任何签名。
+ */
+public final class SessionKey {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final String salt;
+    private final long expiresAt;
+    private final Mac mac;
+    private long lastSeq = 0;
+
+    private SessionKey(String token, String salt, long expiresAt) throws GeneralSecurityException {
+        this.salt = salt;
+        this.expiresAt = expiresAt;
+        this.mac = Mac.getInstance("HmacSHA256");
+        this.mac.init(new SecretKeySpec(derive(token, salt), "HmacSHA256"));
+    }
+
+    /**
+     * 生成新的随机 salt，并由 Token 派生会话密钥
+     * @param token 客户端与服务器共享的 Token
+     */
+    public static SessionKey issue(String token, long ttlMs) throws GeneralSecurityException {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String salt = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        return new SessionKey(token, salt, System.currentTimeMillis() + ttlMs);
+    }
+
+    /**
+     * 会话密钥 = HMAC-SHA256(token, salt)，取原始的 32 字节
+     */
+    private static byte[] derive(String token, String salt) throws GeneralSecurityException {
+        Mac kdf = Mac.getInstance("HmacSHA256");
+        kdf.init(new SecretKeySpec(token.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return kdf.doFinal(salt.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 发送给客户端的 salt，客户端据此派生会话密钥
+     */
+    public String getSalt() {
+        return salt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    /**
+     * 校验 seq 与签名，通过后记录 seq，同一 seq 不能再次使用
+     * @param prefix seq + action
+     * @param data 请求中 data 字段的原文
+     */
+    public synchronized boolean verify(long seq, String signature, String prefix, String data) {
+        if (seq <= lastSeq || signature == null) return false;
+        byte[] provided;
+        try {
+            provided = Base64.getDecoder().decode(signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        mac.update(prefix.getBytes(StandardCharsets.UTF_8));
+        mac.update(data.getBytes(StandardCharsets.UTF_8));
+        if (!MessageDigest.isEqual(mac.doFinal(), provided)) return false;
+        lastSeq = seq;
+        return true;
+    }
+}
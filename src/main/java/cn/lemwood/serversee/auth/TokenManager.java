@@ -6,8 +6,12 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.logging.Logger;
 
 public class TokenManager {
@@ -15,7 +19,10 @@ public class TokenManager {
     private static final String TOKEN_PREFIX = "serversee_";
     private final File tokenFile;
     private final Logger logger;
+    private static final int MAC_POOL_SIZE = 32;
     private String currentToken;
+    private final BlockingQueue<Mac> macPool = new ArrayBlockingQueue<>(MAC_POOL_SIZE);
+    private volatile Mac macPrototype;
 
     public TokenManager(File dataFolder, Logger logger) {
         this.tokenFile = new File(dataFolder, TOKEN_FILE);
@@ -55,7 +62,7 @@ public class TokenManager {
 
     public boolean validate(String token) {
         if (token == null || currentToken == null) return false;
-        return currentToken.equals(token);
+        return MessageDigest.isEqual(currentToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -65,22 +72,57 @@ public class TokenManager {
      * @return 验证是否通过
      */
     public boolean validateSignature(String signature, String dataToSign) {
-        if (signature == null || dataToSign == null || currentToken == null) return false;
+        return validateSignature(signature, dataToSign, "");
+    }
+
+    /**
+     * 验证签名，待签名数据为 prefix 与 data 直接拼接，避免为拼接复制较大的 data
+     */
+    public boolean validateSignature(String signature, String prefix, String data) {
+        if (signature == null || prefix == null || data == null || currentToken == null) return false;
+        byte[] provided;
+        try {
+            provided = Base64.getDecoder().decode(signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        Mac mac;
         try {
-            String expected = calculateHMAC(dataToSign, currentToken);
-            return expected.equals(signature);
-        } catch (Exception e) {
+            mac = acquireMac();
+        } catch (GeneralSecurityException e) {
             logger.warning("签名验证出错: " + e.getMessage());
             return false;
         }
+        try {
+            mac.update(prefix.getBytes(StandardCharsets.UTF_8));
+            mac.update(data.getBytes(StandardCharsets.UTF_8));
+            // 按字节做定长比较，避免通过响应时间逐字节猜出签名
+            return MessageDigest.isEqual(mac.doFinal(), provided);
+        } finally {
+            macPool.offer(mac);
+        }
     }
 
-    private String calculateHMAC(String data, String key) throws Exception {
-        SecretKeySpec secretKeySpec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-        Mac mac = Mac.getInstance("HmacSHA256");
-        mac.init(secretKeySpec);
-        byte[] rawHmac = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-        return Base64.getEncoder().encodeToString(rawHmac);
+    /**
+     * 从池中取出已经用 Token 初始化的 Mac。
+     * 请求可能运行在虚拟线程上，ThreadLocal 无法复用，因此使用共享的池
+     */
+    private Mac acquireMac() throws GeneralSecurityException {
+        Mac mac = macPool.poll();
+        if (mac != null) return mac;
+        Mac prototype = macPrototype;
+        if (prototype == null) {
+            prototype = Mac.getInstance("HmacSHA256");
+            prototype.init(new SecretKeySpec(currentToken.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            macPrototype = prototype;
+        }
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(currentToken.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return mac;
+        }
     }
 
     public String getCurrentToken() {
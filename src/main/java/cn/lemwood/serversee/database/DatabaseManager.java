@@ -1,52 +1,227 @@
 package cn.lemwood.serversee.database;
 
+import cn.lemwood.serversee.ServerSee;
+import org.bukkit.Bukkit;
+
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.io.File;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DatabaseManager {
+    private static final String INSERT_SQL = "INSERT INTO metrics(timestamp, tps, mspt, cpu_process, cpu_system, memory_used, memory_max) " +
+            "VALUES(?,?,?,?,?,?,?)";
+    // 数据库结构版本，保存在 PRAGMA user_version 中
+    private static final int SCHEMA_VERSION = 2;
+    // 查询时间跨度不超过该值时直接使用原始数据
+    private static final long RAW_QUERY_MAX_SPAN_MS = TimeUnit.HOURS.toMillis(6);
+    // 各降采样层级适用的最大查询跨度，超过时使用更粗的层级
+    private static final long MINUTE_QUERY_MAX_SPAN_MS = TimeUnit.DAYS.toMillis(3);
+    private static final long QUARTER_QUERY_MAX_SPAN_MS = TimeUnit.DAYS.toMillis(31);
+    private static final String[] AGGREGATIONS = {"avg", "min", "max", "p95"};
+
     private final String url;
     private Connection connection;
+    // WAL 模式下读写可并发，查询使用独立的连接与独立的锁，不会被批量写入或清理阻塞
+    private Connection readConnection;
+    private final Object readConnectionLock = new Object();
+    private final long rawRetentionMs;
+    private final Map<RollupTier, Long> rollupRetentionMs = new EnumMap<>(RollupTier.class);
+    private final RollupAggregator rollupAggregator = new RollupAggregator();
+    private final Map<RollupTier, PreparedStatement> rollupStatements = new EnumMap<>(RollupTier.class);
+
+    // 写回队列: 采样先进入内存，按数量或时间批量写入同一个事务
+    private final Queue<MetricsSample> pendingSamples = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    // 上次写入失败的采样，下次写入时排在队列之前重试
+    private final List<MetricsSample> retrySamples = new ArrayList<>();
+    private final int batchSize;
+    private final int maxPending;
+    private PreparedStatement insertStatement;
 
     public DatabaseManager(File dataFolder) {
+        this(databaseFile(dataFolder),
+                ServerSee.getInstance().getConfig().getInt("database.batch-size", 50),
+                TimeUnit.HOURS.toMillis(Math.max(1, ServerSee.getInstance().getConfig().getInt("database.retention-hours", 24))),
+                rollupRetentionFromConfig());
+        startCleanupTask();
+        startFlushTask();
+    }
+
+    /**
+     * 不读取配置、不启动定时任务，由调用方负责调用 flush (供基准测试使用)
+     */
+    DatabaseManager(File databaseFile, int batchSize, long rawRetentionMs, Map<RollupTier, Long> rollupRetentionMs) {
+        this.url = "jdbc:sqlite:" + databaseFile.getAbsolutePath();
+        this.batchSize = Math.max(1, batchSize);
+        this.maxPending = this.batchSize * 20;
+        this.rawRetentionMs = rawRetentionMs;
+        this.rollupRetentionMs.putAll(rollupRetentionMs);
+        initialize();
+    }
+
+    private static File databaseFile(File dataFolder) {
         if (!dataFolder.exists()) {
             dataFolder.mkdirs();
         }
-        this.url = "jdbc:sqlite:" + new File(dataFolder, "data.db").getAbsolutePath();
-        initialize();
-        startCleanupTask();
+        return new File(dataFolder, "data.db");
+    }
+
+    private static Map<RollupTier, Long> rollupRetentionFromConfig() {
+        Map<RollupTier, Long> retention = new EnumMap<>(RollupTier.class);
+        for (RollupTier tier : RollupTier.values()) {
+            int days = ServerSee.getInstance().getConfig().getInt("database.rollup-retention-days." + tier.label, tier.defaultRetentionDays);
+            retention.put(tier, TimeUnit.DAYS.toMillis(Math.max(1, days)));
+        }
+        return retention;
     }
 
     private synchronized Connection getConnection() throws SQLException {
         if (connection == null || connection.isClosed()) {
-            connection = DriverManager.getConnection(url);
+            connection = openConnection();
         }
         return connection;
     }
 
+    /**
+     * 不能占用写入连接的对象锁 (flush 与 cleanupOldData 持有它执行整个事务)
+     */
+    private Connection getReadConnection() throws SQLException {
+        synchronized (readConnectionLock) {
+            if (readConnection == null || readConnection.isClosed()) {
+                readConnection = openConnection();
+            }
+            return readConnection;
+        }
+    }
+
+    private Connection openConnection() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            // 以下 PRAGMA 均为连接级别，每个新连接都需要设置
+            stmt.execute("PRAGMA synchronous=NORMAL");
+            stmt.execute("PRAGMA temp_store=MEMORY");
+            stmt.execute("PRAGMA busy_timeout=5000");
+            stmt.execute("PRAGMA cache_size=-8000");
+        }
+        return conn;
+    }
+
     private void initialize() {
-        String sql = "CREATE TABLE IF NOT EXISTS metrics (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "timestamp DATETIME DEFAULT CURRENT_TIMESTAMP," +
-                "tps REAL," +
-                "mspt REAL," +
-                "cpu_process REAL," +
-                "cpu_system REAL," +
-                "memory_used REAL," +
-                "memory_max REAL" +
-                ");";
-        try (Statement stmt = getConnection().createStatement()) {
-            stmt.execute(sql);
+        try {
+            Connection conn = getConnection();
+            try (Statement stmt = conn.createStatement()) {
+                // WAL 模式会持久化到数据库文件中
+                stmt.execute("PRAGMA journal_mode=WAL");
+            }
+            int version = getSchemaVersion(conn);
+            if (version < 1) {
+                migrateToIntegerTimestamps(conn);
+            }
+            if (version < 2) {
+                migrateToRollupTables(conn);
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
+    private int getSchemaVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * 版本 1: timestamp 改为毫秒级整数并建立索引。
+     * 旧版本的 DATETIME 文本数据会在同一个事务中原地迁移。
+     */
+    private void migrateToIntegerTimestamps(Connection conn) throws SQLException {
+        boolean legacyTable;
+        try (ResultSet rs = conn.getMetaData().getTables(null, null, "metrics", null)) {
+            legacyTable = rs.next();
+        }
+
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE metrics_v1 (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "timestamp INTEGER NOT NULL," +
+                    "tps REAL," +
+                    "mspt REAL," +
+                    "cpu_process REAL," +
+                    "cpu_system REAL," +
+                    "memory_used REAL," +
+                    "memory_max REAL" +
+                    ")");
+            int migrated = 0;
+            if (legacyTable) {
+                migrated = stmt.executeUpdate("INSERT INTO metrics_v1(id, timestamp, tps, mspt, cpu_process, cpu_system, memory_used, memory_max) " +
+                        "SELECT id, CAST(strftime('%s', timestamp) AS INTEGER) * 1000, tps, mspt, cpu_process, cpu_system, memory_used, memory_max " +
+                        "FROM metrics WHERE strftime('%s', timestamp) IS NOT NULL");
+                stmt.execute("DROP TABLE metrics");
+            }
+            stmt.execute("ALTER TABLE metrics_v1 RENAME TO metrics");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_metrics_timestamp ON metrics(timestamp)");
+            stmt.execute("PRAGMA user_version = 1");
+            conn.commit();
+            if (legacyTable) {
+                ServerSee.getInstance().getLogger().info("数据库结构已升级，迁移了 " + migrated + " 条指标数据");
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * 版本 2: 创建 1m/15m/1h 降采样表，并用现有的原始数据回填
+     */
+    private void migrateToRollupTables(Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            for (RollupTier tier : RollupTier.values()) {
+                stmt.execute(tier.createTableSql());
+            }
+
+            RollupAggregator backfill = new RollupAggregator();
+            List<RollupRow> rows = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT timestamp, tps, mspt, cpu_process, cpu_system, memory_used, memory_max FROM metrics ORDER BY timestamp")) {
+                while (rs.next()) {
+                    rows.addAll(backfill.add(new MetricsSample(rs.getLong(1), rs.getDouble(2), rs.getDouble(3),
+                            rs.getDouble(4), rs.getDouble(5), rs.getDouble(6), rs.getDouble(7))));
+                }
+            }
+            rows.addAll(backfill.drainOpen());
+            writeRollups(conn, rows);
+
+            stmt.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
     private void startCleanupTask() {
-        // 每小时清理一次超过 24 小时的数据
+        // 每小时清理一次超过保留时间的数据
         org.bukkit.Bukkit.getScheduler().runTaskTimerAsynchronously(
             cn.lemwood.serversee.ServerSee.getInstance(),
             this::cleanupOldData,
@@ -55,10 +230,23 @@ public class DatabaseManager {
         );
     }
 
-    private void cleanupOldData() {
-        String sql = "DELETE FROM metrics WHERE timestamp < datetime('now', '-24 hours')";
-        try (Statement stmt = getConnection().createStatement()) {
-            int deleted = stmt.executeUpdate(sql);
+    private void startFlushTask() {
+        long interval = 20L * Math.max(1, ServerSee.getInstance().getConfig().getInt("database.flush-interval", 10));
+        Bukkit.getScheduler().runTaskTimerAsynchronously(ServerSee.getInstance(), this::flush, interval, interval);
+    }
+
+    private synchronized void cleanupOldData() {
+        String sql = "DELETE FROM metrics WHERE timestamp < ?";
+        try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+            pstmt.setLong(1, System.currentTimeMillis() - rawRetentionMs);
+            int deleted = pstmt.executeUpdate();
+            long now = System.currentTimeMillis();
+            for (RollupTier tier : RollupTier.values()) {
+                try (PreparedStatement rollupDelete = getConnection().prepareStatement("DELETE FROM " + tier.table + " WHERE bucket < ?")) {
+                    rollupDelete.setLong(1, now - rollupRetentionMs.get(tier));
+                    deleted += rollupDelete.executeUpdate();
+                }
+            }
             if (deleted > 0) {
                 cn.lemwood.serversee.ServerSee.getInstance().getLogger().info("已清理 " + deleted + " 条旧的指标数据");
             }
@@ -67,30 +255,305 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * 将一次采样加入写回队列，达到 batch-size 时触发异步批量写入
+     */
     public void saveMetrics(double tps, double mspt, double cpuProcess, double cpuSystem, double memUsed, double memMax) {
-        String sql = "INSERT INTO metrics(tps, mspt, cpu_process, cpu_system, memory_used, memory_max) VALUES(?,?,?,?,?,?)";
-        try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
-            pstmt.setDouble(1, tps);
-            pstmt.setDouble(2, mspt);
-            pstmt.setDouble(3, cpuProcess);
-            pstmt.setDouble(4, cpuSystem);
-            pstmt.setDouble(5, memUsed);
-            pstmt.setDouble(6, memMax);
-            pstmt.executeUpdate();
+        pendingSamples.add(new MetricsSample(System.currentTimeMillis(), tps, mspt, cpuProcess, cpuSystem, memUsed, memMax));
+        int pending = pendingCount.incrementAndGet();
+
+        // 数据库长时间不可写时丢弃最旧的采样，避免队列无限增长
+        while (pending > maxPending && pendingSamples.poll() != null) {
+            pending = pendingCount.decrementAndGet();
+        }
+        if (pending >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            ServerSee plugin = ServerSee.getInstance();
+            if (plugin.isEnabled()) {
+                Bukkit.getScheduler().runTaskAsynchronously(plugin, this::flush);
+            } else {
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * 将队列中的全部采样在一个事务内批量写入，并同步更新降采样表
+     */
+    public void flush() {
+        flush(false);
+    }
+
+    private synchronized void flush(boolean drainOpenBuckets) {
+        flushScheduled.set(false);
+        if (pendingSamples.isEmpty() && retrySamples.isEmpty() && !drainOpenBuckets) return;
+
+        MetricsSample sample;
+        while ((sample = pendingSamples.poll()) != null) {
+            retrySamples.add(sample);
+            pendingCount.decrementAndGet();
+        }
+        // 数据库长时间不可写时同样只保留最新的 maxPending 条
+        if (retrySamples.size() > maxPending) {
+            int dropped = retrySamples.size() - maxPending;
+            retrySamples.subList(0, dropped).clear();
+            ServerSee.getInstance().getLogger().warning("指标数据长时间无法写入，已丢弃最旧的 " + dropped + " 条");
+        }
+
+        // 降采样状态直接推进，事务失败时恢复到写入前
+        RollupAggregator.Checkpoint checkpoint = rollupAggregator.checkpoint();
+        Connection conn = null;
+        try {
+            conn = getConnection();
+            if (insertStatement == null || insertStatement.isClosed()) {
+                insertStatement = conn.prepareStatement(INSERT_SQL);
+            }
+            conn.setAutoCommit(false);
+            List<RollupRow> rollups = new ArrayList<>();
+            for (MetricsSample pending : retrySamples) {
+                rollups.addAll(rollupAggregator.add(pending));
+                insertStatement.setLong(1, pending.timestamp);
+                insertStatement.setDouble(2, pending.tps);
+                insertStatement.setDouble(3, pending.mspt);
+                insertStatement.setDouble(4, pending.cpuProcess);
+                insertStatement.setDouble(5, pending.cpuSystem);
+                insertStatement.setDouble(6, pending.memoryUsed);
+                insertStatement.setDouble(7, pending.memoryMax);
+                insertStatement.addBatch();
+            }
+            insertStatement.executeBatch();
+            if (drainOpenBuckets) {
+                rollups.addAll(rollupAggregator.drainOpen());
+            }
+            writeRollups(conn, rollups);
+            conn.commit();
+            retrySamples.clear();
         } catch (SQLException e) {
-            e.printStackTrace();
+            ServerSee.getInstance().getLogger().warning("批量写入 " + retrySamples.size() + " 条指标数据失败，将在下次写入时重试: " + e.getMessage());
+            rollupAggregator.rollback(checkpoint);
+            // 未执行的批次不能留到下一次写入，否则会被重复执行
+            clearBatches();
+            try {
+                if (conn != null) conn.rollback();
+            } catch (SQLException ignored) {}
+        } finally {
+            try {
+                if (conn != null) conn.setAutoCommit(true);
+            } catch (SQLException ignored) {}
+        }
+    }
+
+    private void clearBatches() {
+        List<PreparedStatement> statements = new ArrayList<>(rollupStatements.values());
+        statements.add(insertStatement);
+        for (PreparedStatement pstmt : statements) {
+            try {
+                if (pstmt != null && !pstmt.isClosed()) pstmt.clearBatch();
+            } catch (SQLException ignored) {}
+        }
+    }
+
+    private void writeRollups(Connection conn, List<RollupRow> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+        for (RollupRow row : rows) {
+            PreparedStatement pstmt = rollupStatements.get(row.tier);
+            if (pstmt == null || pstmt.isClosed()) {
+                pstmt = conn.prepareStatement(row.tier.upsertSql());
+                rollupStatements.put(row.tier, pstmt);
+            }
+            int index = 1;
+            pstmt.setLong(index++, row.bucket);
+            pstmt.setInt(index++, row.samples);
+            for (int f = 0; f < MetricsSample.FIELDS.length; f++) {
+                pstmt.setDouble(index++, row.min[f]);
+                pstmt.setDouble(index++, row.max[f]);
+                pstmt.setDouble(index++, row.avg[f]);
+                pstmt.setDouble(index++, row.p95[f]);
+            }
+            pstmt.addBatch();
+        }
+        for (PreparedStatement pstmt : rollupStatements.values()) {
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * 根据查询的时间范围与聚合粒度选择数据层级，返回 null 表示使用原始数据。
+     * 先按跨度选出足够精细的层级，若请求的聚合粒度更粗，则改用不超过该粒度的最粗层级。
+     */
+    private RollupTier selectTier(long from, long to, long bucketMs) {
+        long span = to - from;
+        long age = System.currentTimeMillis() - from;
+        RollupTier tier;
+        if (span <= RAW_QUERY_MAX_SPAN_MS && age <= rawRetentionMs) {
+            tier = null;
+        } else if (span <= MINUTE_QUERY_MAX_SPAN_MS && age <= rollupRetentionMs.get(RollupTier.MINUTE)) {
+            tier = RollupTier.MINUTE;
+        } else if (span <= QUARTER_QUERY_MAX_SPAN_MS && age <= rollupRetentionMs.get(RollupTier.QUARTER)) {
+            tier = RollupTier.QUARTER;
+        } else {
+            tier = RollupTier.HOUR;
+        }
+        for (RollupTier candidate : RollupTier.values()) {
+            boolean coarser = tier == null || candidate.ordinal() > tier.ordinal();
+            if (coarser && candidate.bucketMs <= bucketMs && age <= rollupRetentionMs.get(candidate)) {
+                tier = candidate;
+            }
+        }
+        return tier;
+    }
+
+    /**
+     * 查询时间范围内的历史数据，按时间正序返回列式结果
+     * @param fields 需要返回的字段，为空时返回全部字段
+     * @param bucketMs 聚合粒度 (毫秒)，小于等于所选层级的精度时按层级原始精度返回
+     * @param agg 桶内聚合方式: avg / min / max / p95
+     * @throws IllegalArgumentException 字段或聚合方式不合法
+     * @throws SQLException 查询失败
+     */
+    public HistorySeries queryHistory(long from, long to, List<String> fields, long bucketMs, String agg) throws SQLException {
+        HistorySeries series = new HistorySeries();
+        try {
+            streamHistory(from, to, fields, bucketMs, agg, series);
+        } catch (IOException e) {
+            // HistorySeries 只写内存，不会抛出 IOException
+            throw new IllegalStateException(e);
+        }
+        return series;
+    }
+
+    /**
+     * 与 queryHistory 相同，但逐行交给 consumer 处理，不在内存中保留结果。
+     * 查询中途失败时 consumer 可能已经收到部分行
+     */
+    public void streamHistory(long from, long to, List<String> fields, long bucketMs, String agg, HistoryConsumer consumer) throws SQLException, IOException {
+        List<String> selected = (fields == null || fields.isEmpty()) ? Arrays.asList(MetricsSample.FIELDS) : fields;
+        for (String field : selected) {
+            if (!Arrays.asList(MetricsSample.FIELDS).contains(field)) {
+                throw new IllegalArgumentException("Unknown field: " + field);
+            }
+        }
+        if (!Arrays.asList(AGGREGATIONS).contains(agg)) {
+            throw new IllegalArgumentException("Unknown aggregation: " + agg);
+        }
+
+        RollupTier tier = selectTier(from, to, bucketMs);
+        long resolution = tier == null ? 0 : tier.bucketMs;
+        // 聚合粒度取层级精度的整数倍
+        long bucket = bucketMs <= resolution ? resolution : (resolution > 0 ? bucketMs - bucketMs % resolution : bucketMs);
+        consumer.begin(tier == null ? "raw" : tier.label, bucket, agg, selected);
+
+        if (tier == null && bucket > 0 && "p95".equals(agg)) {
+            queryRawPercentile(consumer, from, to, selected, bucket);
+        } else {
+            queryAggregated(consumer, tier, from, to, selected, bucket, agg);
+        }
+    }
+
+    private void queryAggregated(HistoryConsumer consumer, RollupTier tier, long from, long to, List<String> fields, long bucket, String agg) throws SQLException, IOException {
+        String timeColumn = tier == null ? "timestamp" : "bucket";
+        String table = tier == null ? "metrics" : tier.table;
+        StringBuilder sql = new StringBuilder("SELECT ");
+        boolean grouped = bucket > 0 && (tier == null || bucket > tier.bucketMs);
+        sql.append(grouped ? "(" + timeColumn + " / " + bucket + ") * " + bucket : timeColumn);
+        for (String field : fields) {
+            sql.append(", ").append(grouped ? aggregateExpression(tier, field, agg) : columnExpression(tier, field, agg));
+        }
+        sql.append(" FROM ").append(table).append(" WHERE ").append(timeColumn).append(" BETWEEN ? AND ?");
+        if (grouped) sql.append(" GROUP BY 1");
+        sql.append(" ORDER BY 1");
+
+        try (PreparedStatement pstmt = getReadConnection().prepareStatement(sql.toString())) {
+            pstmt.setLong(1, tier == null ? from : tier.bucketOf(from));
+            pstmt.setLong(2, to);
+            double[] values = new double[fields.size()];
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = rs.getDouble(i + 2);
+                    }
+                    consumer.row(rs.getLong(1), values);
+                }
+            }
+        }
+    }
+
+    private static String columnExpression(RollupTier tier, String field, String agg) {
+        return tier == null ? field : field + "_" + agg;
+    }
+
+    private static String aggregateExpression(RollupTier tier, String field, String agg) {
+        if (tier == null) {
+            return agg.toUpperCase(Locale.ROOT) + "(" + field + ")";
+        }
+        switch (agg) {
+            case "min": return "MIN(" + field + "_min)";
+            case "max": return "MAX(" + field + "_max)";
+            // 多个桶的 p95 无法精确合并，取最大值作为保守上界
+            case "p95": return "MAX(" + field + "_p95)";
+            default: return "SUM(" + field + "_avg * samples) / SUM(samples)";
+        }
+    }
+
+    /**
+     * 原始数据的 p95 无法在 SQL 中计算，按时间顺序游标读取，逐桶计算
+     */
+    private void queryRawPercentile(HistoryConsumer consumer, long from, long to, List<String> fields, long bucket) throws SQLException, IOException {
+        StringBuilder sql = new StringBuilder("SELECT timestamp");
+        for (String field : fields) {
+            sql.append(", ").append(field);
+        }
+        sql.append(" FROM metrics WHERE timestamp BETWEEN ? AND ? ORDER BY timestamp");
+
+        try (PreparedStatement pstmt = getReadConnection().prepareStatement(sql.toString())) {
+            pstmt.setLong(1, from);
+            pstmt.setLong(2, to);
+            double[][] buffer = new double[fields.size()][16];
+            double[] result = new double[fields.size()];
+            int count = 0;
+            long currentBucket = Long.MIN_VALUE;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    long b = (rs.getLong(1) / bucket) * bucket;
+                    if (b != currentBucket && count > 0) {
+                        addPercentileRow(consumer, currentBucket, buffer, count, result);
+                        count = 0;
+                    }
+                    currentBucket = b;
+                    if (count == buffer[0].length) {
+                        for (int i = 0; i < buffer.length; i++) {
+                            buffer[i] = Arrays.copyOf(buffer[i], count * 2);
+                        }
+                    }
+                    for (int i = 0; i < buffer.length; i++) {
+                        buffer[i][count] = rs.getDouble(i + 2);
+                    }
+                    count++;
+                }
+            }
+            if (count > 0) {
+                addPercentileRow(consumer, currentBucket, buffer, count, result);
+            }
+        }
+    }
+
+    private static void addPercentileRow(HistoryConsumer consumer, long bucket, double[][] buffer, int count, double[] result) throws IOException {
+        int rank = Math.max(0, (int) Math.ceil(count * 0.95) - 1);
+        for (int i = 0; i < buffer.length; i++) {
+            Arrays.sort(buffer[i], 0, count);
+            result[i] = buffer[i][rank];
         }
+        consumer.row(bucket, result);
     }
 
     public List<Map<String, Object>> getRecentTps(int limit) {
         List<Map<String, Object>> results = new ArrayList<>();
         String sql = "SELECT timestamp, tps FROM metrics ORDER BY timestamp DESC LIMIT ?";
-        try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+        try (PreparedStatement pstmt = getReadConnection().prepareStatement(sql)) {
             pstmt.setInt(1, limit);
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
                 Map<String, Object> map = new HashMap<>();
-                map.put("timestamp", rs.getString("timestamp"));
+                map.put("timestamp", rs.getLong("timestamp"));
                 map.put("tps", rs.getDouble("tps"));
                 results.add(map);
             }
@@ -100,32 +563,45 @@ public class DatabaseManager {
         return results;
     }
 
-    public List<Map<String, Object>> getRecentMetrics(int limit) {
-        List<Map<String, Object>> results = new ArrayList<>();
-        String sql = "SELECT * FROM metrics ORDER BY timestamp DESC LIMIT ?";
-        try (PreparedStatement pstmt = getConnection().prepareStatement(sql)) {
+    /**
+     * 逐行读取最近的 limit 条原始数据 (按时间倒序)，字段顺序同 MetricsSample.FIELDS
+     */
+    public void streamRecentMetrics(int limit, HistoryConsumer consumer) throws SQLException, IOException {
+        String sql = "SELECT timestamp, tps, mspt, cpu_process, cpu_system, memory_used, memory_max FROM metrics ORDER BY timestamp DESC LIMIT ?";
+        consumer.begin("raw", 0, null, Arrays.asList(MetricsSample.FIELDS));
+        try (PreparedStatement pstmt = getReadConnection().prepareStatement(sql)) {
             pstmt.setInt(1, limit);
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                Map<String, Object> map = new HashMap<>();
-                map.put("timestamp", rs.getString("timestamp"));
-                map.put("tps", rs.getDouble("tps"));
-                map.put("mspt", rs.getDouble("mspt"));
-                map.put("cpu_process", rs.getDouble("cpu_process"));
-                map.put("cpu_system", rs.getDouble("cpu_system"));
-                map.put("memory_used", rs.getDouble("memory_used"));
-                map.put("memory_max", rs.getDouble("memory_max"));
-                results.add(map);
+            double[] values = new double[MetricsSample.FIELDS.length];
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = rs.getDouble(i + 2);
+                    }
+                    consumer.row(rs.getLong(1), values);
+                }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        return results;
     }
 
     public void close() {
+        // 关闭前写入队列中剩余的采样以及未完成的降采样桶
+        flush(true);
         try {
+            if (insertStatement != null) {
+                insertStatement.close();
+            }
+            for (PreparedStatement pstmt : rollupStatements.values()) {
+                pstmt.close();
+            }
+            synchronized (readConnectionLock) {
+                if (readConnection != null && !readConnection.isClosed()) {
+                    readConnection.close();
+                }
+            }
             if (connection != null && !connection.isClosed()) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("PRAGMA optimize");
+                }
                 connection.close();
             }
         } catch (SQLException e) {
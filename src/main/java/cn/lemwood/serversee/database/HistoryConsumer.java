@@ -0,0 +1,24 @@
+package cn.lemwood.serversee.database;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 逐行接收历史查询结果，查询期间数据库游标保持打开，
+ * 实现方可以直接把每一行写出而无需先物化整个结果集。
+ */
+public interface HistoryConsumer {
+    /**
+     * 在第一行之前调用一次
+     * @param tier 数据层级 (raw / 1m / 15m / 1h)
+     * @param bucket 聚合粒度 (毫秒)，0 表示未聚合
+     * @param agg 聚合方式，未聚合时可能为 null
+     * @param fields 每行 values 对应的字段名
+     */
+    void begin(String tier, long bucket, String agg, List<String> fields) throws IOException;
+
+    /**
+     * values 数组会被复用，实现方不应持有其引用
+     */
+    void row(long timestamp, double[] values) throws IOException;
+}
@@ -0,0 +1,75 @@
+package cn.lemwood.serversee.database;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 列式的历史数据查询结果: 一个时间戳数组加上每个字段各自的数值数组。
+ * 相比逐行的 Map，序列化体积更小，客户端也无需再做转置。
+ */
+public final class HistorySeries implements HistoryConsumer {
+    private String tier;
+    private long bucket;
+    private String agg;
+    private String[] fields = new String[0];
+    private long[] timestamps = new long[64];
+    private double[][] columns = new double[0][];
+    private int size = 0;
+
+    @Override
+    public void begin(String tier, long bucket, String agg, List<String> fields) {
+        this.tier = tier;
+        this.bucket = bucket;
+        this.agg = agg;
+        this.fields = fields.toArray(new String[0]);
+        this.columns = new double[this.fields.length][timestamps.length];
+    }
+
+    @Override
+    public void row(long timestamp, double[] values) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = Arrays.copyOf(columns[i], size * 2);
+            }
+        }
+        timestamps[size] = timestamp;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i][size] = values[i];
+        }
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 输出格式: {"tier", "bucket", "agg", "timestamp": [...], "series": {"tps": [...], ...}}
+     */
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("tier").value(tier);
+        out.name("bucket").value(bucket);
+        out.name("agg").value(agg);
+        out.name("timestamp").beginArray();
+        for (int i = 0; i < size; i++) {
+            out.value(timestamps[i]);
+        }
+        out.endArray();
+        out.name("series").beginObject();
+        for (int f = 0; f < fields.length; f++) {
+            out.name(fields[f]).beginArray();
+            double[] column = columns[f];
+            for (int i = 0; i < size; i++) {
+                out.value(column[i]);
+            }
+            out.endArray();
+        }
+        out.endObject();
+        out.endObject();
+    }
+}
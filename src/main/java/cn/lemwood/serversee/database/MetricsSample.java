@@ -0,0 +1,42 @@
+package cn.lemwood.serversee.database;
+
+/**
+ * 一次性能指标采样，在写入数据库前暂存于内存队列中。
+ */
+final class MetricsSample {
+    // 指标字段名，与数据库列名一致
+    static final String[] FIELDS = {"tps", "mspt", "cpu_process", "cpu_system", "memory_used", "memory_max"};
+
+    final long timestamp;
+    final double tps;
+    final double mspt;
+    final double cpuProcess;
+    final double cpuSystem;
+    final double memoryUsed;
+    final double memoryMax;
+
+    MetricsSample(long timestamp, double tps, double mspt, double cpuProcess, double cpuSystem, double memoryUsed, double memoryMax) {
+        this.timestamp = timestamp;
+        this.tps = tps;
+        this.mspt = mspt;
+        this.cpuProcess = cpuProcess;
+        this.cpuSystem = cpuSystem;
+        this.memoryUsed = memoryUsed;
+        this.memoryMax = memoryMax;
+    }
+
+    /**
+     * 按 FIELDS 中的下标获取指标值
+     */
+    double value(int field) {
+        switch (field) {
+            case 0: return tps;
+            case 1: return mspt;
+            case 2: return cpuProcess;
+            case 3: return cpuSystem;
+            case 4: return memoryUsed;
+            case 5: return memoryMax;
+            default: throw new IllegalArgumentException("Unknown field index: " + field);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package cn.lemwood.serversee.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 增量维护各降采样层级的当前桶。
+ * 采样按时间顺序逐条加入，跨入新桶时输出上一个桶的统计结果，无需回扫数据库。
+ * 当前桶内的原始值保留在内存中用于计算 p95，内存占用受桶长度 / 采集间隔限制。
+ * 非线程安全，由 DatabaseManager 在写入锁内调用。
+ */
+final class RollupAggregator {
+    private final OpenBucket[] open = new OpenBucket[RollupTier.values().length];
+
+    /**
+     * 加入一条采样，返回因此而完成的桶
+     */
+    List<RollupRow> add(MetricsSample sample) {
+        List<RollupRow> completed = new ArrayList<>(0);
+        for (RollupTier tier : RollupTier.values()) {
+            long bucket = tier.bucketOf(sample.timestamp);
+            OpenBucket current = open[tier.ordinal()];
+            if (current != null && current.start != bucket) {
+                completed.add(current.finish());
+                current = null;
+            }
+            if (current == null) {
+                current = new OpenBucket(tier, bucket);
+                open[tier.ordinal()] = current;
+            }
+            current.add(sample);
+        }
+        return completed;
+    }
+
+    /**
+     * 输出所有尚未完成的桶 (用于关闭时持久化)，并清空状态
+     */
+    List<RollupRow> drainOpen() {
+        List<RollupRow> rows = new ArrayList<>();
+        for (int i = 0; i < open.length; i++) {
+            if (open[i] != null && open[i].count > 0) {
+                rows.add(open[i].finish());
+            }
+            open[i] = null;
+        }
+        return rows;
+    }
+
+    /**
+     * 记录当前状态，写入失败时用 rollback 恢复。
+     * 桶内的值只会追加，finish 与 drainOpen 也不修改旧桶，因此只需记下各层级的当前桶与其中的采样数
+     */
+    Checkpoint checkpoint() {
+        Checkpoint checkpoint = new Checkpoint(open.length);
+        for (int i = 0; i < open.length; i++) {
+            checkpoint.buckets[i] = open[i];
+            checkpoint.counts[i] = open[i] == null ? 0 : open[i].count;
+        }
+        return checkpoint;
+    }
+
+    /**
+     * 恢复到 checkpoint 时的状态，之后加入的采样全部丢弃
+     */
+    void rollback(Checkpoint checkpoint) {
+        for (int i = 0; i < open.length; i++) {
+            open[i] = checkpoint.buckets[i];
+            if (open[i] != null) open[i].count = checkpoint.counts[i];
+        }
+    }
+
+    static final class Checkpoint {
+        private final OpenBucket[] buckets;
+        private final int[] counts;
+
+        private Checkpoint(int tiers) {
+            this.buckets = new OpenBucket[tiers];
+            this.counts = new int[tiers];
+        }
+    }
+
+    private static final class OpenBucket {
+        private final RollupTier tier;
+        private final long start;
+        private final double[][] values = new double[MetricsSample.FIELDS.length][8];
+        private int count = 0;
+
+        OpenBucket(RollupTier tier, long start) {
+            this.tier = tier;
+            this.start = start;
+        }
+
+        void add(MetricsSample sample) {
+            if (count == values[0].length) {
+                for (int f = 0; f < values.length; f++) {
+                    values[f] = Arrays.copyOf(values[f], count * 2);
+                }
+            }
+            for (int f = 0; f < values.length; f++) {
+                values[f][count] = sample.value(f);
+            }
+            count++;
+        }
+
+        RollupRow finish() {
+            int fields = values.length;
+            double[] min = new double[fields];
+            double[] max = new double[fields];
+            double[] avg = new double[fields];
+            double[] p95 = new double[fields];
+            for (int f = 0; f < fields; f++) {
+                double[] sorted = Arrays.copyOf(values[f], count);
+                Arrays.sort(sorted);
+                double sum = 0;
+                for (double v : sorted) sum += v;
+                min[f] = sorted[0];
+                max[f] = sorted[count - 1];
+                avg[f] = sum / count;
+                p95[f] = sorted[Math.max(0, (int) Math.ceil(count * 0.95) - 1)];
+            }
+            return new RollupRow(tier, start, count, min, max, avg, p95);
+        }
+    }
+}
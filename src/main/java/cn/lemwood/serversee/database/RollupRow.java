@@ -0,0 +1,24 @@
+package cn.lemwood.serversee.database;
+
+/**
+ * 一个已完成的降采样桶，各数组按 MetricsSample.FIELDS 的顺序排列。
+ */
+final class RollupRow {
+    final RollupTier tier;
+    final long bucket;
+    final int samples;
+    final double[] min;
+    final double[] max;
+    final double[] avg;
+    final double[] p95;
+
+    RollupRow(RollupTier tier, long bucket, int samples, double[] min, double[] max, double[] avg, double[] p95) {
+        this.tier = tier;
+        this.bucket = bucket;
+        this.samples = samples;
+        this.min = min;
+        this.max = max;
+        this.avg = avg;
+        this.p95 = p95;
+    }
+}
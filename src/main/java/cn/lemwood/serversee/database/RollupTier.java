@@ -0,0 +1,63 @@
+package cn.lemwood.serversee.database;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 降采样层级。每个层级一张表，以桶的起始时间为主键，
+ * 每个指标保存 min/max/avg/p95 四个统计值。
+ */
+enum RollupTier {
+    MINUTE("1m", "metrics_1m", TimeUnit.MINUTES.toMillis(1), 7),
+    QUARTER("15m", "metrics_15m", TimeUnit.MINUTES.toMillis(15), 30),
+    HOUR("1h", "metrics_1h", TimeUnit.HOURS.toMillis(1), 365);
+
+    final String label;
+    final String table;
+    final long bucketMs;
+    final int defaultRetentionDays;
+
+    RollupTier(String label, String table, long bucketMs, int defaultRetentionDays) {
+        this.label = label;
+        this.table = table;
+        this.bucketMs = bucketMs;
+        this.defaultRetentionDays = defaultRetentionDays;
+    }
+
+    long bucketOf(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, bucketMs);
+    }
+
+    String createTableSql() {
+        StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(table)
+                .append(" (bucket INTEGER PRIMARY KEY, samples INTEGER NOT NULL");
+        for (String field : MetricsSample.FIELDS) {
+            sql.append(", ").append(field).append("_min REAL")
+               .append(", ").append(field).append("_max REAL")
+               .append(", ").append(field).append("_avg REAL")
+               .append(", ").append(field).append("_p95 REAL");
+        }
+        return sql.append(")").toString();
+    }
+
+    /**
+     * 插入一个桶；桶已存在时 (例如重启前写入的不完整桶) 与旧数据合并。
+     * 合并后的 p95 取两者较大值，是一个保守的近似。
+     */
+    String upsertSql() {
+        StringBuilder columns = new StringBuilder("bucket, samples");
+        StringBuilder values = new StringBuilder("?, ?");
+        StringBuilder updates = new StringBuilder();
+        for (String field : MetricsSample.FIELDS) {
+            columns.append(", ").append(field).append("_min, ").append(field).append("_max, ")
+                   .append(field).append("_avg, ").append(field).append("_p95");
+            values.append(", ?, ?, ?, ?");
+            updates.append(field).append("_min = MIN(").append(field).append("_min, excluded.").append(field).append("_min), ")
+                   .append(field).append("_max = MAX(").append(field).append("_max, excluded.").append(field).append("_max), ")
+                   .append(field).append("_avg = (").append(field).append("_avg * samples + excluded.").append(field)
+                   .append("_avg * excluded.samples) / (samples + excluded.samples), ")
+                   .append(field).append("_p95 = MAX(").append(field).append("_p95, excluded.").append(field).append("_p95), ");
+        }
+        updates.append("samples = samples + excluded.samples");
+        return "INSERT INTO " + table + " (" + columns + ") VALUES (" + values + ") ON CONFLICT(bucket) DO UPDATE SET " + updates;
+    }
+}
@@ -0,0 +1,78 @@
+package cn.lemwood.serversee.metrics;
+
+/**
+ * 某一时刻的硬件与 JVM 指标，由后台采样线程整体替换，读取方总能看到同一次采样的全部数值。
+ * CPU 为百分比，内存单位为 MB，磁盘单位为 GB。
+ */
+public final class HardwareSnapshot {
+    static final HardwareSnapshot EMPTY = new HardwareSnapshot(0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    private final long timestamp;
+    private final double cpuProcess;
+    private final double cpuSystem;
+    private final double memoryUsed;
+    private final double memoryTotal;
+    private final double memoryMax;
+    private final double hostMemoryUsed;
+    private final double hostMemoryTotal;
+    private final double diskUsed;
+    private final double diskTotal;
+
+    HardwareSnapshot(long timestamp, double cpuProcess, double cpuSystem,
+                     double memoryUsed, double memoryTotal, double memoryMax,
+                     double hostMemoryUsed, double hostMemoryTotal, double diskUsed, double diskTotal) {
+        this.timestamp = timestamp;
+        this.cpuProcess = cpuProcess;
+        this.cpuSystem = cpuSystem;
+        this.memoryUsed = memoryUsed;
+        this.memoryTotal = memoryTotal;
+        this.memoryMax = memoryMax;
+        this.hostMemoryUsed = hostMemoryUsed;
+        this.hostMemoryTotal = hostMemoryTotal;
+        this.diskUsed = diskUsed;
+        this.diskTotal = diskTotal;
+    }
+
+    /**
+     * 采样时间 (毫秒时间戳)，尚未采样时为 0
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public double getCpuProcess() {
+        return cpuProcess;
+    }
+
+    public double getCpuSystem() {
+        return cpuSystem;
+    }
+
+    public double getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    public double getMemoryTotal() {
+        return memoryTotal;
+    }
+
+    public double getMemoryMax() {
+        return memoryMax;
+    }
+
+    public double getHostMemoryUsed() {
+        return hostMemoryUsed;
+    }
+
+    public double getHostMemoryTotal() {
+        return hostMemoryTotal;
+    }
+
+    public double getDiskUsed() {
+        return diskUsed;
+    }
+
+    public double getDiskTotal() {
+        return diskTotal;
+    }
+}
@@ -1,10 +1,16 @@
 package cn.lemwood.serversee.metrics;
 
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
 import oshi.SystemInfo;
 import oshi.hardware.GlobalMemory;
 
 import java.io.File;
 import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
 import com.sun.management.OperatingSystemMXBean;
 
 public class SparkManager {
@@ -12,12 +18,11 @@ public class SparkManager {
     private final SystemInfo systemInfo;
     private final OperatingSystemMXBean osBean;
     
-    // 缓存硬件指标
+    // 后台采样线程整体替换快照，读取方无需加锁
+    private volatile HardwareSnapshot snapshot = HardwareSnapshot.EMPTY;
+    private BukkitTask samplerTask;
+    // 仅由采样任务访问
     private long lastHardwareUpdate = 0;
-    private double cachedHostMemTotal = 0;
-    private double cachedHostMemUsed = 0;
-    private double cachedDiskTotal = 0;
-    private double cachedDiskUsed = 0;
     private static final long HARDWARE_CACHE_MS = 10000; // 10秒缓存
 
     public SparkManager(TickMonitor tickMonitor) {
@@ -43,68 +48,118 @@ public class SparkManager {
         return tickMonitor != null ? tickMonitor.getMspt() : 0.0;
     }
 
+    public String getTickTimingMode() {
+        return tickMonitor != null ? tickMonitor.getTimingMode().name().toLowerCase(Locale.ROOT) : "none";
+    }
+
+    public Map<String, TickStats> getTickStats() {
+        return tickMonitor != null ? tickMonitor.getTickStats() : Collections.emptyMap();
+    }
+
+    /**
+     * 最近一次采样的硬件指标，只读取一个 volatile 引用，不会阻塞
+     */
+    public HardwareSnapshot getHardwareSnapshot() {
+        return snapshot;
+    }
+
     public double getCpuProcess() {
-        if (osBean == null) return 0.0;
-        double load = osBean.getProcessCpuLoad();
-        return (load < 0) ? 0.0 : load * 100.0;
+        return snapshot.getCpuProcess();
     }
 
     public double getCpuSystem() {
-        if (osBean == null) return 0.0;
-        double load = osBean.getSystemCpuLoad();
-        return (load < 0) ? 0.0 : load * 100.0;
+        return snapshot.getCpuSystem();
     }
 
     // JVM Memory (Server Memory)
     public double getMemoryUsed() {
-        Runtime runtime = Runtime.getRuntime();
-        return (runtime.totalMemory() - runtime.freeMemory()) / 1024.0 / 1024.0;
+        return snapshot.getMemoryUsed();
     }
 
     public double getMemoryTotal() {
-        return Runtime.getRuntime().totalMemory() / 1024.0 / 1024.0;
+        return snapshot.getMemoryTotal();
     }
 
     public double getMemoryMax() {
-        return Runtime.getRuntime().maxMemory() / 1024.0 / 1024.0;
-    }
-
-    private void updateHardwareMetricsIfNeeded() {
-        long now = System.currentTimeMillis();
-        if (now - lastHardwareUpdate < HARDWARE_CACHE_MS) return;
-
-        try {
-            GlobalMemory memory = systemInfo.getHardware().getMemory();
-            cachedHostMemTotal = memory.getTotal() / 1024.0 / 1024.0;
-            cachedHostMemUsed = (memory.getTotal() - memory.getAvailable()) / 1024.0 / 1024.0;
-
-            File file = new File(".");
-            cachedDiskTotal = file.getTotalSpace() / 1024.0 / 1024.0 / 1024.0;
-            cachedDiskUsed = (file.getTotalSpace() - file.getFreeSpace()) / 1024.0 / 1024.0 / 1024.0;
-
-            lastHardwareUpdate = now;
-        } catch (Throwable ignored) {}
+        return snapshot.getMemoryMax();
     }
 
     // Host Memory (System Memory)
     public double getHostMemoryTotal() {
-        updateHardwareMetricsIfNeeded();
-        return cachedHostMemTotal;
+        return snapshot.getHostMemoryTotal();
     }
 
     public double getHostMemoryUsed() {
-        updateHardwareMetricsIfNeeded();
-        return cachedHostMemUsed;
+        return snapshot.getHostMemoryUsed();
     }
 
     // Disk Usage (Current Partition)
     public double getDiskTotal() {
-        updateHardwareMetricsIfNeeded();
-        return cachedDiskTotal;
+        return snapshot.getDiskTotal();
     }
 
     public double getDiskUsed() {
-        updateHardwareMetricsIfNeeded();
-        return cachedDiskUsed;
+        return snapshot.getDiskUsed();
+    }
+
+    /**
+     * 在异步线程中按固定间隔采样，启动后立即采样一次
+     */
+    public void start(Plugin plugin, long intervalMs) {
+        long ticks = Math.max(1, intervalMs / 50);
+        samplerTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::sample, 0L, ticks);
+    }
+
+    public void stop() {
+        if (samplerTask != null) {
+            samplerTask.cancel();
+            samplerTask = null;
+        }
+    }
+
+    /**
+     * 只由采样任务调用。OSHI 与磁盘查询较慢，每 HARDWARE_CACHE_MS 才刷新一次，其余时间沿用上次的值
+     */
+    private void sample() {
+        long now = System.currentTimeMillis();
+        HardwareSnapshot previous = snapshot;
+
+        double cpuProcess = 0.0;
+        double cpuSystem = 0.0;
+        if (osBean != null) {
+            double processLoad = osBean.getProcessCpuLoad();
+            double systemLoad = osBean.getSystemCpuLoad();
+            cpuProcess = processLoad < 0 ? 0.0 : processLoad * 100.0;
+            cpuSystem = systemLoad < 0 ? 0.0 : systemLoad * 100.0;
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        long totalMemory = runtime.totalMemory();
+        double memoryUsed = (totalMemory - runtime.freeMemory()) / 1024.0 / 1024.0;
+        double memoryTotal = totalMemory / 1024.0 / 1024.0;
+        double memoryMax = runtime.maxMemory() / 1024.0 / 1024.0;
+
+        double hostMemTotal = previous.getHostMemoryTotal();
+        double hostMemUsed = previous.getHostMemoryUsed();
+        double diskTotal = previous.getDiskTotal();
+        double diskUsed = previous.getDiskUsed();
+        if (now - lastHardwareUpdate >= HARDWARE_CACHE_MS) {
+            try {
+                GlobalMemory memory = systemInfo.getHardware().getMemory();
+                long total = memory.getTotal();
+                hostMemTotal = total / 1024.0 / 1024.0;
+                hostMemUsed = (total - memory.getAvailable()) / 1024.0 / 1024.0;
+
+                File file = new File(".");
+                long totalSpace = file.getTotalSpace();
+                diskTotal = totalSpace / 1024.0 / 1024.0 / 1024.0;
+                diskUsed = (totalSpace - file.getFreeSpace()) / 1024.0 / 1024.0 / 1024.0;
+
+                lastHardwareUpdate = now;
+            } catch (Throwable ignored) {}
+        }
+
+        snapshot = new HardwareSnapshot(now, cpuProcess, cpuSystem, memoryUsed, memoryTotal, memoryMax,
+                hostMemUsed, hostMemTotal, diskUsed, diskTotal);
     }
 }
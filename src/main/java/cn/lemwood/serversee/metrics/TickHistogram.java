@@ -0,0 +1,109 @@
+package cn.lemwood.serversee.metrics;
+
+/**
+ * 固定内存的滑动窗口 tick 耗时直方图。
+ * 采用对数-线性分桶 (相对误差约 1.6%)，同时维护 5s/1m/5m/15m 四个窗口的桶计数，
+ * 每 tick 仅做常数次数组更新。只允许主线程写入；读取方不加锁，可能读到相差一个 tick 的数据。
+ */
+final class TickHistogram {
+    static final String[] WINDOW_NAMES = {"5s", "1m", "5m", "15m"};
+    static final int WINDOW_1M = 1;
+    private static final int[] WINDOW_TICKS = {100, 1200, 6000, 18000};
+
+    private static final int LINEAR_BUCKETS = 128;
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_VALUE_MICROS = (1L << 30) - 1;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (30 - 7) * SUB_BUCKETS;
+
+    // 最近 15 分钟每个 tick 的耗时 (微秒)，用于窗口滑出时回减计数
+    private final int[] ring = new int[WINDOW_TICKS[WINDOW_TICKS.length - 1]];
+    private final int[][] counts = new int[WINDOW_TICKS.length][BUCKET_COUNT];
+    private final long[] sums = new long[WINDOW_TICKS.length];
+    private int head = 0;
+    private volatile long recorded = 0;
+
+    void record(long nanos) {
+        int micros = (int) Math.min(Math.max(nanos / 1000, 0), MAX_VALUE_MICROS);
+        long total = recorded;
+        for (int w = 0; w < WINDOW_TICKS.length; w++) {
+            if (total >= WINDOW_TICKS[w]) {
+                int expired = ring[index(head - WINDOW_TICKS[w])];
+                counts[w][bucketOf(expired)]--;
+                sums[w] -= expired;
+            }
+            counts[w][bucketOf(micros)]++;
+            sums[w] += micros;
+        }
+        ring[head] = micros;
+        head = index(head + 1);
+        recorded = total + 1;
+    }
+
+    /**
+     * 指定窗口内 tick 耗时的平均值 (毫秒)
+     */
+    double average(int window) {
+        long samples = Math.min(recorded, WINDOW_TICKS[window]);
+        return samples == 0 ? 0.0 : sums[window] / (double) samples / 1000.0;
+    }
+
+    TickStats snapshot(int window) {
+        long total = recorded;
+        int samples = (int) Math.min(total, WINDOW_TICKS[window]);
+        if (samples == 0) return TickStats.EMPTY;
+
+        int[] windowCounts = counts[window];
+        long count = 0;
+        for (int c : windowCounts) count += c;
+        long rank50 = rank(count, 0.50);
+        long rank95 = rank(count, 0.95);
+        long rank99 = rank(count, 0.99);
+        double p50 = -1, p95 = -1, p99 = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT && seen < rank99; i++) {
+            if (windowCounts[i] == 0) continue;
+            seen += windowCounts[i];
+            double value = bucketMidpoint(i);
+            if (p50 < 0 && seen >= rank50) p50 = value;
+            if (p95 < 0 && seen >= rank95) p95 = value;
+            if (seen >= rank99) p99 = value;
+        }
+        p50 = Math.max(p50, 0);
+        p95 = Math.max(p95, 0);
+
+        // 最大值直接扫描环形缓冲区，保证精确
+        int max = 0;
+        int end = (int) (total % ring.length);
+        for (int i = 1; i <= samples; i++) {
+            int value = ring[index(end - i)];
+            if (value > max) max = value;
+        }
+        return new TickStats(p50 / 1000.0, p95 / 1000.0, p99 / 1000.0, max / 1000.0, average(window), samples);
+    }
+
+    private static long rank(long count, double percentile) {
+        return Math.max(1, (long) Math.ceil(count * percentile));
+    }
+
+    private int index(int i) {
+        int n = ring.length;
+        return ((i % n) + n) % n;
+    }
+
+    static int bucketOf(int micros) {
+        if (micros < LINEAR_BUCKETS) return micros;
+        int msb = 31 - Integer.numberOfLeadingZeros(micros);
+        int shift = msb - SUB_BUCKET_BITS;
+        int sub = (micros >>> shift) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (msb - 7) * SUB_BUCKETS + sub;
+    }
+
+    static double bucketMidpoint(int bucket) {
+        if (bucket < LINEAR_BUCKETS) return bucket;
+        int offset = bucket - LINEAR_BUCKETS;
+        int shift = offset / SUB_BUCKETS + 1;
+        long lower = (long) (SUB_BUCKETS + offset % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) / 2.0;
+    }
+}
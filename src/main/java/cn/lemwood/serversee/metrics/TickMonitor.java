@@ -1,24 +1,91 @@
 package cn.lemwood.serversee.metrics;
 
 import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
 
-import java.util.LinkedList;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class TickMonitor implements Runnable {
     private static final int WINDOW_SIZE_5S = 100; // 5 seconds (20 ticks per second)
     private static final int WINDOW_SIZE_1M = 1200; // 1 minute
 
-    private final LinkedList<Long> tickDurations = new LinkedList<>();
-    private final LinkedList<Long> tickTimestamps = new LinkedList<>();
-    
+    /**
+     * tick 实际耗时的测量方式
+     */
+    public enum TimingMode {
+        // Paper 的 ServerTickStartEvent / ServerTickEndEvent，测量真实的 tick 起止
+        TICK_EVENTS,
+        // 非 Paper 核心: 相邻两次调度器回调之间主线程消耗的 CPU 时间
+        THREAD_CPU,
+        // 无法获取线程 CPU 时间时退化为 tick 间隔
+        INTERVAL
+    }
+
+    // 两个窗口各自维护累计和，每 tick 只需 O(1) 更新
+    private final TickWindow window5s = new TickWindow(WINDOW_SIZE_5S);
+    private final TickWindow window1m = new TickWindow(WINDOW_SIZE_1M);
+    private final TickHistogram busyHistogram = new TickHistogram();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private volatile TimingMode timingMode = TimingMode.INTERVAL;
     private long lastTickTime = 0;
-    private double currentTps5s = 20.0;
-    private double currentTps1m = 20.0;
-    private double currentMspt = 0.0;
+    private long lastCpuTime = -1;
+    private long tickStartTime = 0;
+    // 当前正在执行的 tick 的开始时间 (nanoTime)，为 0 表示主线程空闲
+    private volatile long currentTickStart = 0;
+    private volatile double currentTps5s = 20.0;
+    private volatile double currentTps1m = 20.0;
+    private volatile double currentMspt = 0.0;
 
     public void start(Plugin plugin) {
         Bukkit.getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+
+        if (registerTickEvents(plugin)) {
+            timingMode = TimingMode.TICK_EVENTS;
+        } else if (threadBean.isCurrentThreadCpuTimeSupported()) {
+            if (!threadBean.isThreadCpuTimeEnabled()) {
+                threadBean.setThreadCpuTimeEnabled(true);
+            }
+            timingMode = TimingMode.THREAD_CPU;
+        }
+        plugin.getLogger().info("Tick 耗时测量方式: " + timingMode);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean registerTickEvents(Plugin plugin) {
+        try {
+            Class<? extends Event> startEvent = (Class<? extends Event>) Class.forName("com.destroystokyo.paper.event.server.ServerTickStartEvent");
+            Class<? extends Event> endEvent = (Class<? extends Event>) Class.forName("com.destroystokyo.paper.event.server.ServerTickEndEvent");
+            PluginManager pluginManager = Bukkit.getPluginManager();
+            Listener listener = new Listener() {};
+            pluginManager.registerEvent(startEvent, listener, EventPriority.LOWEST, (l, event) -> onTickStart(), plugin);
+            pluginManager.registerEvent(endEvent, listener, EventPriority.MONITOR, (l, event) -> onTickEnd(), plugin);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (Exception e) {
+            plugin.getLogger().warning("注册 Paper tick 事件失败，改用调度器测量: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void onTickStart() {
+        tickStartTime = System.nanoTime();
+        currentTickStart = tickStartTime;
+    }
+
+    private void onTickEnd() {
+        currentTickStart = 0;
+        if (tickStartTime != 0) {
+            recordBusyTime(System.nanoTime() - tickStartTime);
+        }
     }
 
     @Override
@@ -26,54 +93,44 @@ public class TickMonitor implements Runnable {
         long now = System.nanoTime();
         if (lastTickTime != 0) {
             long duration = now - lastTickTime;
-            // Convert to milliseconds
-            double durationMs = duration / 1_000_000.0;
-            
-            tickDurations.addLast(duration);
-            tickTimestamps.addLast(now);
-
-            // Keep windows within size
-            while (tickDurations.size() > WINDOW_SIZE_1M) {
-                tickDurations.removeFirst();
-                tickTimestamps.removeFirst();
-            }
+            window5s.add(duration);
+            window1m.add(duration);
+            updateTps();
 
-            updateMetrics();
+            if (timingMode == TimingMode.INTERVAL) {
+                recordBusyTime(duration);
+            }
+        }
+        if (timingMode == TimingMode.THREAD_CPU) {
+            long cpuTime = threadBean.getCurrentThreadCpuTime();
+            if (lastCpuTime >= 0 && cpuTime >= 0) {
+                recordBusyTime(cpuTime - lastCpuTime);
+            }
+            lastCpuTime = cpuTime;
+        }
+        if (timingMode != TimingMode.TICK_EVENTS) {
+            // 没有 tick 结束事件时，以本次调度器回调作为当前 tick 的开始
+            currentTickStart = now;
         }
         lastTickTime = now;
     }
 
-    private void updateMetrics() {
-        if (tickDurations.isEmpty()) return;
+    private void recordBusyTime(long nanos) {
+        busyHistogram.record(nanos);
+        // MSPT 取最近 1 分钟的平均实际耗时
+        currentMspt = busyHistogram.average(TickHistogram.WINDOW_1M);
+    }
 
-        // Calculate MSPT (1m window)
-        double totalDurationMs = 0;
-        for (Long d : tickDurations) {
-            totalDurationMs += d / 1_000_000.0;
-        }
-        currentMspt = totalDurationMs / tickDurations.size();
-
-        // Calculate TPS (5s window)
-        int size5s = Math.min(tickDurations.size(), WINDOW_SIZE_5S);
-        if (size5s > 1) {
-            long timeEnd = tickTimestamps.get(tickTimestamps.size() - 1);
-            long timeStart = tickTimestamps.get(tickTimestamps.size() - size5s);
-            double seconds = (timeEnd - timeStart) / 1_000_000_000.0;
-            if (seconds > 0) {
-                currentTps5s = Math.min(20.0, (size5s - 1) / seconds);
-            }
-        }
+    private void updateTps() {
+        // Calculate TPS: 窗口内 tick 数 / 窗口总耗时
+        currentTps5s = calculateTps(window5s);
+        currentTps1m = calculateTps(window1m);
+    }
 
-        // Calculate TPS (1m window)
-        int size1m = tickDurations.size();
-        if (size1m > 1) {
-            long timeEnd = tickTimestamps.get(tickTimestamps.size() - 1);
-            long timeStart = tickTimestamps.get(0);
-            double seconds = (timeEnd - timeStart) / 1_000_000_000.0;
-            if (seconds > 0) {
-                currentTps1m = Math.min(20.0, (size1m - 1) / seconds);
-            }
-        }
+    private static double calculateTps(TickWindow window) {
+        long totalNanos = window.sum();
+        if (totalNanos <= 0) return 20.0;
+        return Math.min(20.0, window.size() * 1_000_000_000.0 / totalNanos);
     }
 
     public double getTps5s() {
@@ -87,4 +144,26 @@ public class TickMonitor implements Runnable {
     public double getMspt() {
         return currentMspt;
     }
+
+    /**
+     * 当前 tick 的开始时间 (System.nanoTime)，主线程空闲时返回 0
+     */
+    public long getCurrentTickStart() {
+        return currentTickStart;
+    }
+
+    public TimingMode getTimingMode() {
+        return timingMode;
+    }
+
+    /**
+     * 获取 5s/1m/5m/15m 窗口内 tick 实际耗时的 p50/p95/p99/max
+     */
+    public Map<String, TickStats> getTickStats() {
+        Map<String, TickStats> stats = new LinkedHashMap<>();
+        for (int i = 0; i < TickHistogram.WINDOW_NAMES.length; i++) {
+            stats.put(TickHistogram.WINDOW_NAMES[i], busyHistogram.snapshot(i));
+        }
+        return stats;
+    }
 }
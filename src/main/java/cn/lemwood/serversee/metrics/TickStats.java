@@ -0,0 +1,48 @@
+package cn.lemwood.serversee.metrics;
+
+/**
+ * 某个时间窗口内 tick 实际耗时的统计结果，单位均为毫秒。
+ */
+public final class TickStats {
+    static final TickStats EMPTY = new TickStats(0, 0, 0, 0, 0, 0);
+
+    private final double p50;
+    private final double p95;
+    private final double p99;
+    private final double max;
+    private final double avg;
+    private final int samples;
+
+    TickStats(double p50, double p95, double p99, double max, double avg, int samples) {
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+        this.max = max;
+        this.avg = avg;
+        this.samples = samples;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public double getP95() {
+        return p95;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getAvg() {
+        return avg;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+}
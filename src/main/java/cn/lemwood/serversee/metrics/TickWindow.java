@@ -0,0 +1,39 @@
+package cn.lemwood.serversee.metrics;
+
+/**
+ * 基于 long[] 的定长环形窗口，维护窗口内样本的累计和。
+ * 每次写入为 O(1) 且不产生任何对象分配，仅允许单线程 (主线程) 写入。
+ */
+final class TickWindow {
+    private final long[] samples;
+    private int head = 0;
+    private int size = 0;
+    private long sum = 0;
+
+    TickWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    void add(long value) {
+        if (size == samples.length) {
+            sum -= samples[head];
+        } else {
+            size++;
+        }
+        samples[head] = value;
+        sum += value;
+        head = (head + 1 == samples.length) ? 0 : head + 1;
+    }
+
+    long sum() {
+        return sum;
+    }
+
+    int size() {
+        return size;
+    }
+
+    double average() {
+        return size == 0 ? 0.0 : (double) sum / size;
+    }
+}
@@ -0,0 +1,190 @@
+package cn.lemwood.serversee.profiler;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑的调用树 (火焰图结构)。
+ * 栈帧按 "类名 + 方法名" 驻留为整数 ID，节点以并行 int 数组存储，节点数量有上限；
+ * 超出上限后的更深栈帧会被截断并计入 truncated，样本归属到已存在的最深节点。
+ * 非线程安全，调用方需自行同步。
+ */
+public final class CallTree {
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxNodes;
+
+    // 栈帧驻留表: owner -> method -> frameId
+    private final Map<String, Map<String, Integer>> frameIds = new HashMap<>();
+    private final List<String> frameOwners = new ArrayList<>();
+    private final List<String> frameMethods = new ArrayList<>();
+
+    private int[] nodeFrame;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] totalSamples;
+    private int[] selfSamples;
+    private int nodeCount;
+
+    private long samples = 0;
+    private long truncated = 0;
+
+    public CallTree(int maxNodes) {
+        this.maxNodes = Math.max(1, maxNodes);
+        int capacity = Math.min(INITIAL_CAPACITY, this.maxNodes);
+        nodeFrame = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        totalSamples = new int[capacity];
+        selfSamples = new int[capacity];
+        nodeFrame[ROOT] = NONE;
+        firstChild[ROOT] = NONE;
+        nextSibling[ROOT] = NONE;
+        nodeCount = 1;
+    }
+
+    /**
+     * 记录一次堆栈采样
+     * @param label 可选的分组标签 (例如线程名)，为 null 时直接挂在根节点下
+     * @param stack 线程堆栈，下标 0 为栈顶
+     */
+    public void addSample(String label, StackTraceElement[] stack) {
+        samples++;
+        int node = ROOT;
+        totalSamples[ROOT]++;
+        boolean complete = true;
+
+        if (label != null) {
+            int child = child(node, frameId(label, ""));
+            if (child == NONE) {
+                complete = false;
+            } else {
+                node = child;
+                totalSamples[node]++;
+            }
+        }
+        for (int i = stack.length - 1; i >= 0 && complete; i--) {
+            StackTraceElement element = stack[i];
+            int child = child(node, frameId(element.getClassName(), element.getMethodName()));
+            if (child == NONE) {
+                complete = false;
+            } else {
+                node = child;
+                totalSamples[node]++;
+            }
+        }
+        if (!complete) truncated++;
+        selfSamples[node]++;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public long getTruncated() {
+        return truncated;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    private int frameId(String owner, String method) {
+        Map<String, Integer> methods = frameIds.get(owner);
+        if (methods != null) {
+            Integer id = methods.get(method);
+            if (id != null) return id;
+        }
+        // 节点已满时新栈帧不可能再挂上树，不再驻留，避免帧表无限增长
+        if (nodeCount >= maxNodes) return NONE;
+        if (methods == null) {
+            methods = new HashMap<>();
+            frameIds.put(owner, methods);
+        }
+        int id = frameOwners.size();
+        frameOwners.add(owner);
+        frameMethods.add(method);
+        methods.put(method, id);
+        return id;
+    }
+
+    private int child(int parent, int frame) {
+        if (frame == NONE) return NONE;
+        int last = NONE;
+        for (int c = firstChild[parent]; c != NONE; c = nextSibling[c]) {
+            if (nodeFrame[c] == frame) return c;
+            last = c;
+        }
+        if (nodeCount >= maxNodes) return NONE;
+
+        ensureCapacity(nodeCount + 1);
+        int node = nodeCount++;
+        nodeFrame[node] = frame;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        if (last == NONE) {
+            firstChild[parent] = node;
+        } else {
+            nextSibling[last] = node;
+        }
+        return node;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= nodeFrame.length) return;
+        int capacity = Math.min(maxNodes, Math.max(required, nodeFrame.length * 2));
+        nodeFrame = Arrays.copyOf(nodeFrame, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        totalSamples = Arrays.copyOf(totalSamples, capacity);
+        selfSamples = Arrays.copyOf(selfSamples, capacity);
+    }
+
+    private String frameName(int frame) {
+        String method = frameMethods.get(frame);
+        return method.isEmpty() ? frameOwners.get(frame) : frameOwners.get(frame) + "." + method;
+    }
+
+    /**
+     * 以嵌套对象的形式输出: {"name", "samples", "self", "children"}
+     */
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("samples").value(samples);
+        out.name("truncated").value(truncated);
+        out.name("nodes").value(nodeCount);
+        out.name("children");
+        writeChildren(out, ROOT);
+        out.endObject();
+    }
+
+    private void writeNode(JsonWriter out, int node) throws IOException {
+        out.beginObject();
+        out.name("name").value(frameName(nodeFrame[node]));
+        out.name("samples").value(totalSamples[node]);
+        if (selfSamples[node] > 0) {
+            out.name("self").value(selfSamples[node]);
+        }
+        if (firstChild[node] != NONE) {
+            out.name("children");
+            writeChildren(out, node);
+        }
+        out.endObject();
+    }
+
+    private void writeChildren(JsonWriter out, int parent) throws IOException {
+        out.beginArray();
+        for (int c = firstChild[parent]; c != NONE; c = nextSibling[c]) {
+            writeNode(out, c);
+        }
+        out.endArray();
+    }
+}
@@ -0,0 +1,51 @@
+package cn.lemwood.serversee.profiler;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * 一次卡顿 (tick 超时) 的记录，包含卡顿期间主线程的采样调用树。
+ */
+public final class LagSpike {
+    private final long timestamp;
+    private final double durationMs;
+    private final long samples;
+    private final CallTree tree;
+
+    LagSpike(long timestamp, double durationMs, CallTree tree) {
+        this.timestamp = timestamp;
+        this.durationMs = durationMs;
+        this.samples = tree.getSamples();
+        this.tree = tree;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public double getDurationMs() {
+        return durationMs;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public CallTree getTree() {
+        return tree;
+    }
+
+    /**
+     * 输出为 {"timestamp", "duration_ms", "samples", "tree"}
+     */
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("timestamp").value(timestamp);
+        out.name("duration_ms").value(durationMs);
+        out.name("samples").value(samples);
+        out.name("tree");
+        tree.write(out);
+        out.endObject();
+    }
+}
@@ -0,0 +1,133 @@
+package cn.lemwood.serversee.profiler;
+
+import cn.lemwood.serversee.ServerSee;
+import cn.lemwood.serversee.metrics.TickMonitor;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 卡顿检测看门狗。
+ * 独立的守护线程按固定间隔检查当前 tick 已运行的时间，超过阈值后开始采样主线程堆栈，
+ * 直到该 tick 结束，并将采样聚合为调用树保存到最近卡顿记录中。
+ * 主线程空闲时每次检查只读取一个 volatile 字段，开销可忽略。
+ */
+public class LagSpikeDetector implements Runnable {
+    private final TickMonitor tickMonitor;
+    private final long mainThreadId;
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private final long thresholdNanos;
+    private final long sampleIntervalMs;
+    private final int maxStackDepth;
+    private final int maxNodes;
+    private final int maxSamples;
+    private final int historySize;
+
+    private final ArrayDeque<LagSpike> history = new ArrayDeque<>();
+    private volatile boolean running = false;
+    private Thread thread;
+
+    // 仅由看门狗线程访问
+    private long activeTickStart = 0;
+    private long activeWallClock = 0;
+    private long lastSeenInTick = 0;
+    private CallTree activeTree;
+
+    public LagSpikeDetector(TickMonitor tickMonitor, Thread mainThread) {
+        this.tickMonitor = tickMonitor;
+        this.mainThreadId = mainThread.getId();
+
+        FileConfiguration config = ServerSee.getInstance().getConfig();
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getInt("lag-spike.threshold-ms", 150)));
+        this.sampleIntervalMs = Math.max(1, config.getInt("lag-spike.sample-interval-ms", 10));
+        this.maxStackDepth = Math.max(1, config.getInt("lag-spike.max-stack-depth", 128));
+        this.maxNodes = Math.max(16, config.getInt("lag-spike.max-nodes", 4096));
+        this.maxSamples = Math.max(1, config.getInt("lag-spike.max-samples", 1000));
+        this.historySize = Math.max(1, config.getInt("lag-spike.history-size", 20));
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, "ServerSee-LagWatchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(sampleIntervalMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+            check();
+        }
+    }
+
+    private void check() {
+        long tickStart = tickMonitor.getCurrentTickStart();
+        long now = System.nanoTime();
+
+        if (activeTree != null && tickStart != activeTickStart) {
+            // 卡顿的 tick 已经结束
+            finishSpike();
+        }
+        if (tickStart == 0 || now - tickStart < thresholdNanos) return;
+
+        if (activeTree == null) {
+            activeTickStart = tickStart;
+            activeWallClock = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(now - tickStart);
+            activeTree = new CallTree(maxNodes);
+        }
+        lastSeenInTick = now;
+        if (activeTree.getSamples() >= maxSamples) return;
+
+        ThreadInfo info = threadBean.getThreadInfo(mainThreadId, maxStackDepth);
+        if (info != null) {
+            activeTree.addSample(null, info.getStackTrace());
+        }
+    }
+
+    private void finishSpike() {
+        double durationMs = (lastSeenInTick - activeTickStart) / 1_000_000.0;
+        LagSpike spike = new LagSpike(activeWallClock, durationMs, activeTree);
+        synchronized (history) {
+            if (history.size() >= historySize) {
+                history.removeFirst();
+            }
+            history.addLast(spike);
+        }
+        activeTree = null;
+        activeTickStart = 0;
+    }
+
+    /**
+     * 获取最近的卡顿记录，按时间倒序
+     */
+    public List<LagSpike> getRecentSpikes(int limit) {
+        List<LagSpike> result = new ArrayList<>();
+        synchronized (history) {
+            Iterator<LagSpike> it = history.descendingIterator();
+            while (it.hasNext() && result.size() < limit) {
+                result.add(it.next());
+            }
+        }
+        return result;
+    }
+}
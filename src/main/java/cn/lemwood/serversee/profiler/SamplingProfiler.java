@@ -0,0 +1,222 @@
+package cn.lemwood.serversee.profiler;
+
+import cn.lemwood.serversee.ServerSee;
+import com.google.gson.stream.JsonWriter;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内置的采样分析器。
+ * 在独立的守护线程中按固定间隔采样选定线程 (主线程、异步调度器线程、Netty 线程等) 的堆栈，
+ * 聚合到节点数量有上限的调用树中，因此长时间分析也不会占用过多堆内存。
+ */
+public class SamplingProfiler {
+    public static final String GROUP_MAIN = "main";
+    public static final String GROUP_SCHEDULER = "scheduler";
+    public static final String GROUP_NETTY = "netty";
+
+    private static final long THREAD_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long mainThreadId;
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private final int defaultIntervalMs;
+    private final int maxDurationSeconds;
+    private final int maxStackDepth;
+    private final int maxNodes;
+    private final boolean ignoreSleeping;
+    private final List<String> defaultGroups;
+
+    private Session session;
+
+    public SamplingProfiler(Thread mainThread) {
+        this.mainThreadId = mainThread.getId();
+
+        FileConfiguration config = ServerSee.getInstance().getConfig();
+        this.defaultIntervalMs = Math.max(1, config.getInt("profiler.interval-ms", 10));
+        this.maxDurationSeconds = Math.max(1, config.getInt("profiler.max-duration-seconds", 600));
+        this.maxStackDepth = Math.max(1, config.getInt("profiler.max-stack-depth", 256));
+        this.maxNodes = Math.max(16, config.getInt("profiler.max-nodes", 65536));
+        this.ignoreSleeping = config.getBoolean("profiler.ignore-sleeping", true);
+        List<String> groups = config.getStringList("profiler.threads");
+        this.defaultGroups = groups.isEmpty() ? List.of(GROUP_MAIN, GROUP_SCHEDULER, GROUP_NETTY) : groups;
+    }
+
+    /**
+     * 开始一次新的分析，已有分析在运行时返回 false
+     * @param intervalMs 采样间隔，小于等于 0 时使用配置值
+     * @param groups 要采样的线程分组或线程名前缀，为空时使用配置值
+     * @param durationSeconds 最长运行时间，小于等于 0 或超过上限时使用配置上限
+     */
+    public synchronized boolean start(int intervalMs, List<String> groups, int durationSeconds) {
+        if (session != null && session.running) return false;
+
+        int interval = intervalMs > 0 ? intervalMs : defaultIntervalMs;
+        int duration = (durationSeconds > 0 && durationSeconds < maxDurationSeconds) ? durationSeconds : maxDurationSeconds;
+        List<String> selected = (groups == null || groups.isEmpty()) ? defaultGroups : groups;
+
+        session = new Session(interval, selected, TimeUnit.SECONDS.toNanos(duration));
+        Thread thread = new Thread(session, "ServerSee-Profiler");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * 停止当前分析，保留结果供后续获取
+     */
+    public synchronized boolean stop() {
+        if (session == null || !session.running) return false;
+        session.running = false;
+        return true;
+    }
+
+    public synchronized boolean isRunning() {
+        return session != null && session.running;
+    }
+
+    public synchronized boolean hasResult() {
+        return session != null;
+    }
+
+    /**
+     * 输出当前 (或最近一次) 分析的结果，运行中也可调用
+     */
+    public void writeResult(JsonWriter out) throws IOException {
+        Session current;
+        synchronized (this) {
+            current = session;
+        }
+        if (current == null) {
+            out.nullValue();
+            return;
+        }
+        current.write(out);
+    }
+
+    private final class Session implements Runnable {
+        private final int intervalMs;
+        private final List<String> groups;
+        private final long maxDurationNanos;
+        private final CallTree tree = new CallTree(maxNodes);
+        private final long startTime = System.currentTimeMillis();
+        private volatile long endTime = 0;
+        private volatile boolean running = true;
+
+        private long[] threadIds = new long[0];
+        private String[] threadLabels = new String[0];
+
+        Session(int intervalMs, List<String> groups, long maxDurationNanos) {
+            this.intervalMs = intervalMs;
+            this.groups = groups;
+            this.maxDurationNanos = maxDurationNanos;
+        }
+
+        @Override
+        public void run() {
+            long begin = System.nanoTime();
+            long nextRefresh = begin;
+            try {
+                while (running && System.nanoTime() - begin < maxDurationNanos) {
+                    if (System.nanoTime() >= nextRefresh) {
+                        refreshThreads();
+                        nextRefresh = System.nanoTime() + THREAD_REFRESH_NANOS;
+                    }
+                    sample();
+                    Thread.sleep(intervalMs);
+                }
+            } catch (InterruptedException ignored) {
+            } catch (Throwable t) {
+                ServerSee.getInstance().getLogger().warning("采样分析器异常终止: " + t.getMessage());
+            } finally {
+                running = false;
+                endTime = System.currentTimeMillis();
+            }
+        }
+
+        private void sample() {
+            if (threadIds.length == 0) return;
+            ThreadInfo[] infos = threadBean.getThreadInfo(threadIds, maxStackDepth);
+            synchronized (tree) {
+                for (int i = 0; i < infos.length; i++) {
+                    ThreadInfo info = infos[i];
+                    if (info == null) continue;
+                    if (ignoreSleeping && info.getThreadState() != Thread.State.RUNNABLE) continue;
+                    tree.addSample(threadLabels[i], info.getStackTrace());
+                }
+            }
+        }
+
+        private void refreshThreads() {
+            ThreadGroup root = Thread.currentThread().getThreadGroup();
+            while (root.getParent() != null) {
+                root = root.getParent();
+            }
+            Thread[] threads = new Thread[root.activeCount() * 2 + 16];
+            int count = root.enumerate(threads, true);
+
+            List<Long> ids = new ArrayList<>();
+            List<String> labels = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String label = groupOf(threads[i]);
+                if (label != null) {
+                    ids.add(threads[i].getId());
+                    labels.add(label);
+                }
+            }
+            long[] newIds = new long[ids.size()];
+            for (int i = 0; i < newIds.length; i++) {
+                newIds[i] = ids.get(i);
+            }
+            threadIds = newIds;
+            threadLabels = labels.toArray(new String[0]);
+        }
+
+        private String groupOf(Thread thread) {
+            String name = thread.getName();
+            for (String group : groups) {
+                switch (group) {
+                    case GROUP_MAIN:
+                        if (thread.getId() == mainThreadId) return GROUP_MAIN;
+                        break;
+                    case GROUP_SCHEDULER:
+                        if (name.startsWith("Craft Scheduler Thread")) return GROUP_SCHEDULER;
+                        break;
+                    case GROUP_NETTY:
+                        if (name.startsWith("Netty ")) return GROUP_NETTY;
+                        break;
+                    default:
+                        // 其它值视为线程名前缀
+                        if (name.startsWith(group)) return group;
+                        break;
+                }
+            }
+            return null;
+        }
+
+        void write(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("running").value(running);
+            out.name("start").value(startTime);
+            out.name("end").value(running ? System.currentTimeMillis() : endTime);
+            out.name("interval_ms").value(intervalMs);
+            out.name("threads").beginArray();
+            for (String group : groups) {
+                out.value(group);
+            }
+            out.endArray();
+            out.name("tree");
+            synchronized (tree) {
+                tree.write(out);
+            }
+            out.endObject();
+        }
+    }
+}
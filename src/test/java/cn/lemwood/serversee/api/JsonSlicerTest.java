@@ -0,0 +1,59 @@
+package cn.lemwood.serversee.api;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JsonSlicerTest {
+
+    @Test
+    void returnsRawValueText() {
+        String json = "{\"action\":\"command\", \"data\" : {\"command\": \"say  hi\", \"n\": [1, 2.50]} , \"id\":\"1\"}";
+        assertEquals("{\"command\": \"say  hi\", \"n\": [1, 2.50]}", JsonSlicer.valueOf(json, "data"));
+        assertEquals("\"command\"", JsonSlicer.valueOf(json, "action"));
+    }
+
+    @Test
+    void handlesScalarsAndNestedStrings() {
+        assertEquals("12", JsonSlicer.valueOf("{\"data\":12}", "data"));
+        assertEquals("null", JsonSlicer.valueOf("{\"data\":null,\"x\":true}", "data"));
+        assertEquals("\"a}\\\"]\"", JsonSlicer.valueOf("{\"data\":\"a}\\\"]\"}", "data"));
+        assertEquals("{\"k\":\"}{\"}", JsonSlicer.valueOf("{\"data\":{\"k\":\"}{\"}}", "data"));
+    }
+
+    @Test
+    void missingKeyReturnsNull() {
+        assertNull(JsonSlicer.valueOf("{\"action\":\"ping\"}", "data"));
+        assertNull(JsonSlicer.valueOf("{}", "data"));
+        assertNull(JsonSlicer.valueOf("{\"x\":{\"data\":1}}", "data"));
+    }
+
+    @Test
+    void malformedInputReturnsNull() {
+        assertNull(JsonSlicer.valueOf("[\"data\"]", "data"));
+        assertNull(JsonSlicer.valueOf("{\"data\":{\"a\":1}", "data"));
+        assertNull(JsonSlicer.valueOf("{data:1}", "data"));
+        assertNull(JsonSlicer.valueOf("{\"data\":1 /* x */}", "data"));
+    }
+
+    @Test
+    void escapedKeyReturnsNull() {
+        // Gson 解析后 "data" 就是 data，原文中的 data 不是实际执行的那个
+        assertNull(JsonSlicer.valueOf("{\"data\":{\"command\":\"list\"},\"d\\u0061ta\":{\"command\":\"stop\"}}", "data"));
+        assertNull(JsonSlicer.valueOf("{\"d\\u0061ta\":{\"command\":\"stop\"},\"data\":{\"command\":\"list\"}}", "data"));
+        // 其他字段名含转义时同样拒绝
+        assertNull(JsonSlicer.valueOf("{\"a\\\"b\":1,\"data\":2}", "data"));
+    }
+
+    @Test
+    void duplicateKeyReturnsNull() {
+        assertNull(JsonSlicer.valueOf("{\"data\":{\"command\":\"list\"},\"data\":{\"command\":\"stop\"}}", "data"));
+        assertNull(JsonSlicer.valueOf("{\"data\":1,\"id\":\"x\",\"data\":1}", "data"));
+    }
+
+    @Test
+    void escapesInValuesAreAllowed() {
+        assertEquals("\"\\u0041\\n\"", JsonSlicer.valueOf("{\"data\":\"\\u0041\\n\",\"id\":\"\\\\\"}", "data"));
+    }
+}
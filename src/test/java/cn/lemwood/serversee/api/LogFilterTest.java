@@ -0,0 +1,41 @@
+package cn.lemwood.serversee.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogFilterTest {
+
+    @Test
+    void ranksLog4jAndJulLevels() {
+        assertEquals(LogFilter.rank("WARN"), LogFilter.rank("WARNING"));
+        assertEquals(LogFilter.rank("ERROR"), LogFilter.rank("SEVERE"));
+        assertTrue(LogFilter.rank("DEBUG") < LogFilter.rank("INFO"));
+        assertTrue(LogFilter.rank("INFO") < LogFilter.rank("warn"));
+    }
+
+    @Test
+    void levelNamesIgnoreDefaultLocale() {
+        Locale saved = Locale.getDefault();
+        try {
+            Locale.setDefault(new Locale("tr", "TR"));
+            assertEquals(LogFilter.rank("INFO"), LogFilter.rank("info"));
+            assertEquals(LogFilter.rank("FINEST"), LogFilter.rank("finest"));
+            assertEquals(LogFilter.rank("CONFIG"), LogFilter.rank("config"));
+        } finally {
+            Locale.setDefault(saved);
+        }
+    }
+
+    @Test
+    void filtersByLevelAndLoggerPrefix() {
+        LogFilter filter = LogFilter.of("warn", new String[]{"net.minecraft"});
+        assertTrue(filter.accepts(new LogEntry(LogEntry.Origin.LOG4J, 0, "ERROR", "net.minecraft.server", "x")));
+        assertFalse(filter.accepts(new LogEntry(LogEntry.Origin.LOG4J, 0, "INFO", "net.minecraft.server", "x")));
+        assertFalse(filter.accepts(new LogEntry(LogEntry.Origin.LOG4J, 0, "ERROR", "org.bukkit", "x")));
+    }
+}
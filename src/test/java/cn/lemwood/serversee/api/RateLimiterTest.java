@@ -0,0 +1,88 @@
+package cn.lemwood.serversee.api;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+    // 每 1000 秒补充一个令牌，测试期间可以视为不补充
+    private static final double SLOW_REFILL = 0.001;
+
+    @Test
+    void allowsBurstUpToCapacity() {
+        RateLimiter limiter = new RateLimiter(5, SLOW_REFILL);
+        RateLimiter.Bucket bucket = limiter.newBucket();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire(bucket, 1));
+        }
+        assertTrue(limiter.tryAcquire(bucket, 1) > 0);
+    }
+
+    @Test
+    void rejectedAcquireDoesNotConsume() {
+        RateLimiter limiter = new RateLimiter(5, SLOW_REFILL);
+        RateLimiter.Bucket bucket = limiter.newBucket();
+        assertEquals(0, limiter.tryAcquire(bucket, 3));
+        assertTrue(limiter.tryAcquire(bucket, 3) > 0);
+        assertEquals(0, limiter.tryAcquire(bucket, 2));
+    }
+
+    @Test
+    void costIsCappedAtCapacity() {
+        RateLimiter limiter = new RateLimiter(5, SLOW_REFILL);
+        RateLimiter.Bucket bucket = limiter.newBucket();
+        assertEquals(0, limiter.tryAcquire(bucket, 100));
+        assertTrue(limiter.tryAcquire(bucket, 1) > 0);
+    }
+
+    @Test
+    void waitForDoesNotConsume() {
+        RateLimiter limiter = new RateLimiter(2, SLOW_REFILL);
+        RateLimiter.Bucket bucket = limiter.newBucket();
+        assertEquals(0, limiter.waitFor(bucket, 2));
+        assertEquals(0, limiter.waitFor(bucket, 2));
+        assertEquals(0, limiter.tryAcquire(bucket, 2));
+        assertTrue(limiter.waitFor(bucket, 1) > 0);
+    }
+
+    @Test
+    void refundRestoresTokens() {
+        RateLimiter limiter = new RateLimiter(2, SLOW_REFILL);
+        RateLimiter.Bucket bucket = limiter.newBucket();
+        assertEquals(0, limiter.tryAcquire(bucket, 2));
+        limiter.refund(bucket, 2);
+        assertEquals(0, limiter.tryAcquire(bucket, 2));
+        assertTrue(limiter.tryAcquire(bucket, 1) > 0);
+    }
+
+    @Test
+    void refillsOverTime() throws InterruptedException {
+        // 每 10 毫秒补充一个令牌
+        RateLimiter limiter = new RateLimiter(1, 100);
+        RateLimiter.Bucket bucket = limiter.newBucket();
+        assertEquals(0, limiter.tryAcquire(bucket, 1));
+        long wait = limiter.tryAcquire(bucket, 1);
+        assertTrue(wait > 0);
+        Thread.sleep(wait / 1_000_000 + 5);
+        assertEquals(0, limiter.tryAcquire(bucket, 1));
+    }
+
+    @Test
+    void sharedBucketsAreReusedAndIdleOnesEvicted() {
+        RateLimiter limiter = new RateLimiter(2, SLOW_REFILL);
+        RateLimiter.Bucket a = limiter.bucket("127.0.0.1");
+        assertSame(a, limiter.bucket("127.0.0.1"));
+        assertEquals(0, limiter.tryAcquire(a, 1));
+
+        // 尚未补满的桶保留，否则会丢失已消耗的令牌
+        limiter.evictIdle();
+        assertSame(a, limiter.bucket("127.0.0.1"));
+
+        limiter.refund(a, 1);
+        limiter.evictIdle();
+        assertNotSame(a, limiter.bucket("127.0.0.1"));
+    }
+}
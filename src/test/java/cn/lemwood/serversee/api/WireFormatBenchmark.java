@@ -0,0 +1,147 @@
+package cn.lemwood.serversee.api;
+
+import cn.lemwood.serversee.database.HistorySeries;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各类消息以 JSON 与 MessagePack 编码的耗时，结果为发送前的完整字节 (JSON 含 UTF-8 编码)。
+ * 每种组合编码后的字节数在 Setup 中打印。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+    private static final List<String> FIELDS = Arrays.asList("tps", "mspt", "cpu_process", "cpu_system", "memory_used", "memory_max");
+
+    /**
+     * metrics: 一次指标推送；history: 1440 行的列式历史数据；logs: 100 条日志的推送
+     */
+    @Param({"metrics", "history", "logs"})
+    public String message;
+
+    @Param({"json", "msgpack"})
+    public String format;
+
+    private Map<String, Object> metrics;
+    private HistorySeries history;
+    private String[] logMessages;
+
+    @Setup
+    public void setup() throws IOException {
+        metrics = new LinkedHashMap<>();
+        metrics.put("tps_5s", 19.97);
+        metrics.put("tps_1m", 19.99);
+        metrics.put("mspt", 12.482);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (String window : new String[]{"5s", "1m", "5m", "15m"}) {
+            stats.put(window, Map.of("p50", 11.2, "p95", 18.7, "p99", 24.1, "max", 48.9));
+        }
+        metrics.put("mspt_stats", stats);
+        metrics.put("cpu_process", 23.41);
+        metrics.put("cpu_system", 41.07);
+        metrics.put("mem_used", 3121.5);
+        metrics.put("mem_total", 6144.0);
+        metrics.put("mem_max", 8192.0);
+        metrics.put("host_mem_used", 11288.2);
+        metrics.put("host_mem_total", 32011.9);
+        metrics.put("disk_used", 182.4);
+        metrics.put("disk_total", 476.9);
+
+        history = new HistorySeries();
+        history.begin("1m", 60000, "avg", FIELDS);
+        double[] values = new double[FIELDS.size()];
+        for (int i = 0; i < 1440; i++) {
+            values[0] = 19.5 + (i % 7) * 0.07;
+            values[1] = 10 + (i % 13) * 0.731;
+            values[2] = 20 + (i % 11) * 1.37;
+            values[3] = 35 + (i % 17) * 0.93;
+            values[4] = 2900 + (i % 29) * 11.3;
+            values[5] = 8192;
+            history.row(1700000000000L + i * 60000L, values);
+        }
+
+        logMessages = new String[100];
+        for (int i = 0; i < logMessages.length; i++) {
+            logMessages[i] = "Player" + i + " issued server command: /tp " + (i * 17) + " 64 " + (i * 31);
+        }
+
+        System.out.println(message + " / " + format + ": " + encode().length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        if ("msgpack".equals(format)) {
+            MessagePackWriter out = new MessagePackWriter();
+            write(out);
+            return out.toByteArray();
+        }
+        StringWriter text = new StringWriter();
+        write(new JsonWriter(text));
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void write(JsonWriter out) throws IOException {
+        out.setSerializeNulls(false);
+        out.beginObject();
+        switch (message) {
+            case "metrics":
+                out.name("type").value("push");
+                out.name("action").value("metrics");
+                out.name("data");
+                GSON.toJson(metrics, Map.class, out);
+                break;
+            case "history":
+                out.name("id").value("req-1");
+                out.name("type").value("response");
+                out.name("success").value(true);
+                out.name("data");
+                history.write(out);
+                break;
+            default:
+                out.name("type").value("push");
+                out.name("action").value("logs");
+                out.name("data").beginObject();
+                out.name("entries").beginArray();
+                for (int i = 0; i < logMessages.length; i++) {
+                    out.beginObject();
+                    out.name("seq").value(1760000000000000L + i);
+                    out.name("time").value(1760000000000L + i * 15L);
+                    out.name("level").value("INFO");
+                    out.name("logger").value("Minecraft");
+                    out.name("message").value(logMessages[i]);
+                    out.endObject();
+                }
+                out.endArray();
+                out.name("dropped").value(0);
+                out.endObject();
+                break;
+        }
+        out.endObject();
+    }
+}
@@ -0,0 +1,73 @@
+package cn.lemwood.serversee.auth;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NonceCacheTest {
+    private static final long WINDOW = 60;
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    @Test
+    void rejectsReplayedNonce() {
+        NonceCache cache = new NonceCache(WINDOW, 100);
+        long ts = now();
+        assertEquals(NonceCache.Result.ACCEPTED, cache.record("a", ts));
+        assertEquals(NonceCache.Result.ACCEPTED, cache.record("b", ts));
+        assertEquals(NonceCache.Result.REPLAYED, cache.record("a", ts));
+        assertEquals(2, cache.size(ts));
+    }
+
+    @Test
+    void timestampsAcrossTheWindowAreTrackedSeparately() {
+        NonceCache cache = new NonceCache(WINDOW, 100);
+        long ts = now();
+        assertEquals(NonceCache.Result.ACCEPTED, cache.record("a", ts - WINDOW));
+        assertEquals(NonceCache.Result.ACCEPTED, cache.record("a", ts + WINDOW));
+        assertEquals(NonceCache.Result.REPLAYED, cache.record("a", ts - WINDOW));
+        assertEquals(NonceCache.Result.REPLAYED, cache.record("a", ts + WINDOW));
+    }
+
+    @Test
+    void refusesNewNoncesWhenFull() {
+        NonceCache cache = new NonceCache(WINDOW, 2);
+        long ts = now();
+        assertEquals(NonceCache.Result.ACCEPTED, cache.record("a", ts));
+        assertEquals(NonceCache.Result.ACCEPTED, cache.record("b", ts));
+        assertEquals(NonceCache.Result.FULL, cache.record("c", ts));
+        // 已满时重放仍然按重放拒绝
+        assertEquals(NonceCache.Result.REPLAYED, cache.record("a", ts));
+    }
+
+    @Test
+    void refusesOverlongNonce() {
+        NonceCache cache = new NonceCache(WINDOW, 100);
+        String nonce = "x".repeat(129);
+        assertEquals(NonceCache.Result.FULL, cache.record(nonce, now()));
+        assertEquals(NonceCache.Result.ACCEPTED, cache.record(nonce.substring(1), now()));
+    }
+
+    @Test
+    void timestampOfOverwrittenBucketIsTreatedAsReplay() {
+        NonceCache cache = new NonceCache(WINDOW, 100);
+        long ts = now();
+        assertEquals(NonceCache.Result.ACCEPTED, cache.record("a", ts));
+        // 环上同一槽位的更早时间桶已被替换，无法判断是否重放
+        long ringSeconds = (2 * WINDOW / 10 + 2) * 10;
+        assertEquals(NonceCache.Result.REPLAYED, cache.record("b", ts - ringSeconds));
+    }
+
+    @Test
+    void expiredBucketsLeaveTheWindow() {
+        NonceCache cache = new NonceCache(WINDOW, 1);
+        long ts = now();
+        assertEquals(NonceCache.Result.ACCEPTED, cache.record("old", ts - 2 * WINDOW));
+        assertEquals(0, cache.size(ts));
+        cache.sweep();
+        assertEquals(NonceCache.Result.ACCEPTED, cache.record("new", ts));
+        assertEquals(1, cache.size(ts));
+    }
+}
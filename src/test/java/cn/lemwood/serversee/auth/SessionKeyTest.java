@@ -0,0 +1,94 @@
+package cn.lemwood.serversee.auth;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionKeyTest {
+    private static final String TOKEN = "serversee_test-token";
+
+    private static byte[] hmac(byte[] key, String text) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        return mac.doFinal(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 按文档中客户端的做法计算: session_key = HMAC-SHA256(token, salt)，mac = HMAC-SHA256(session_key, text)
+     */
+    private static String sign(String token, SessionKey session, String text) throws Exception {
+        byte[] key = hmac(token.getBytes(StandardCharsets.UTF_8), session.getSalt());
+        return Base64.getEncoder().encodeToString(hmac(key, text));
+    }
+
+    private static String sign(SessionKey session, String text) throws Exception {
+        return sign(TOKEN, session, text);
+    }
+
+    @Test
+    void acceptsValidMacWithIncreasingSeq() throws Exception {
+        SessionKey session = SessionKey.issue(TOKEN, 60_000);
+        String data = "{\"command\":\"list\"}";
+        assertTrue(session.verify(1, sign(session, "1command" + data), "1command", data));
+        assertTrue(session.verify(5, sign(session, "5command" + data), "5command", data));
+    }
+
+    @Test
+    void rejectsReusedOrDecreasingSeq() throws Exception {
+        SessionKey session = SessionKey.issue(TOKEN, 60_000);
+        assertTrue(session.verify(3, sign(session, "3ping"), "3ping", ""));
+        assertFalse(session.verify(3, sign(session, "3ping"), "3ping", ""));
+        assertFalse(session.verify(2, sign(session, "2ping"), "2ping", ""));
+        assertFalse(session.verify(0, sign(session, "0ping"), "0ping", ""));
+    }
+
+    @Test
+    void rejectsWrongMacWithoutConsumingSeq() throws Exception {
+        SessionKey session = SessionKey.issue(TOKEN, 60_000);
+        String data = "{\"command\":\"list\"}";
+        assertFalse(session.verify(1, sign(session, "1command{\"command\":\"stop\"}"), "1command", data));
+        assertFalse(session.verify(1, "not base64!", "1command", data));
+        assertFalse(session.verify(1, null, "1command", data));
+        assertTrue(session.verify(1, sign(session, "1command" + data), "1command", data));
+    }
+
+    @Test
+    void rejectsMacFromAnotherSession() throws Exception {
+        SessionKey session = SessionKey.issue(TOKEN, 60_000);
+        SessionKey other = SessionKey.issue(TOKEN, 60_000);
+        assertNotEquals(session.getSalt(), other.getSalt());
+        assertFalse(session.verify(1, sign(other, "1ping"), "1ping", ""));
+    }
+
+    @Test
+    void rejectsMacDerivedFromAnotherToken() throws Exception {
+        SessionKey session = SessionKey.issue(TOKEN, 60_000);
+        assertFalse(session.verify(1, sign("serversee_other", session, "1ping"), "1ping", ""));
+        assertTrue(session.verify(1, sign(session, "1ping"), "1ping", ""));
+    }
+
+    @Test
+    void saltDoesNotRevealTheKey() throws Exception {
+        SessionKey session = SessionKey.issue(TOKEN, 60_000);
+        // 把 salt 当作密钥使用 (即旧协议中直接发送密钥的做法) 无法通过校验
+        String forged = Base64.getEncoder().encodeToString(
+                hmac(session.getSalt().getBytes(StandardCharsets.UTF_8), "1ping"));
+        assertFalse(session.verify(1, forged, "1ping", ""));
+    }
+
+    @Test
+    void expiresAfterTtl() throws Exception {
+        long before = System.currentTimeMillis();
+        SessionKey session = SessionKey.issue(TOKEN, 1_000);
+        assertFalse(session.isExpired(before));
+        assertTrue(session.isExpired(session.getExpiresAt()));
+        assertTrue(session.getExpiresAt() >= before + 1_000);
+    }
+}
@@ -0,0 +1,93 @@
+package cn.lemwood.serversee.auth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 每秒可完成的签名验证次数，对比原先每次新建并初始化 Mac、比较 Base64 字符串的实现。
+ * 加上 -t 4 等参数可以观察多线程共享 Mac 池时的吞吐。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenManagerBenchmark {
+    /**
+     * data 字段原文的长度 (字符)
+     */
+    @Param({"64", "4096"})
+    public int dataLength;
+
+    private Path dataFolder;
+    private TokenManager tokenManager;
+    private String prefix;
+    private String data;
+    private String signature;
+
+    @Setup
+    public void setup() throws Exception {
+        dataFolder = Files.createTempDirectory("serversee-bench");
+        tokenManager = new TokenManager(dataFolder.toFile(), Logger.getAnonymousLogger());
+        prefix = "command" + 1760000000L + "3f1c9a7e5b2d4c60";
+        StringBuilder sb = new StringBuilder("{\"command\":\"");
+        while (sb.length() < dataLength - 2) sb.append('x');
+        data = sb.append("\"}").toString();
+        signature = calculateHMAC(prefix + data, tokenManager.getCurrentToken());
+        if (!tokenManager.validateSignature(signature, prefix, data) || !legacyValidate()) {
+            throw new IllegalStateException("签名不匹配");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dataFolder.resolve("token.txt"));
+        Files.deleteIfExists(dataFolder);
+    }
+
+    @Benchmark
+    public boolean pooledMac() {
+        return tokenManager.validateSignature(signature, prefix, data);
+    }
+
+    @Benchmark
+    public boolean newMacPerRequest() throws Exception {
+        return legacyValidate();
+    }
+
+    /**
+     * 改造前的验证方式: 拼接待签名字符串，每次新建 Mac，按 Base64 字符串比较
+     */
+    private boolean legacyValidate() throws Exception {
+        return calculateHMAC(prefix + data, tokenManager.getCurrentToken()).equals(signature);
+    }
+
+    private static String calculateHMAC(String data, String key) throws Exception {
+        SecretKeySpec secretKeySpec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(secretKeySpec);
+        byte[] rawHmac = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(rawHmac);
+    }
+}
@@ -0,0 +1,106 @@
+package cn.lemwood.serversee.database;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 写入一条指标采样的平均耗时 (临时目录中的 SQLite 文件)，对比原先每条采样单独 INSERT 并自动提交的方式。
+ * 每次调用写入一批 (默认 batch-size 条)，批量写入包含降采样表的更新。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseManagerBenchmark {
+    private static final int BATCH = 50;
+
+    private Path directory;
+    private DatabaseManager database;
+    private Connection legacy;
+    private long timestamp;
+
+    @Setup
+    public void setup() throws IOException, SQLException {
+        directory = Files.createTempDirectory("serversee-db-bench");
+        Map<RollupTier, Long> retention = new EnumMap<>(RollupTier.class);
+        for (RollupTier tier : RollupTier.values()) {
+            retention.put(tier, TimeUnit.DAYS.toMillis(tier.defaultRetentionDays));
+        }
+        // batch-size 大于每次写入的条数，不会触发 saveMetrics 中的异步写入，由基准方法直接调用 flush
+        database = new DatabaseManager(directory.resolve("data.db").toFile(), BATCH * 2, TimeUnit.HOURS.toMillis(24), retention);
+
+        // 改造前的数据库: 默认的日志模式与同步级别
+        legacy = DriverManager.getConnection("jdbc:sqlite:" + directory.resolve("legacy.db"));
+        try (Statement stmt = legacy.createStatement()) {
+            stmt.execute("CREATE TABLE metrics (id INTEGER PRIMARY KEY AUTOINCREMENT, timestamp INTEGER NOT NULL, " +
+                    "tps REAL, mspt REAL, cpu_process REAL, cpu_system REAL, memory_used REAL, memory_max REAL)");
+        }
+        timestamp = System.currentTimeMillis();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        database.close();
+        legacy.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void batchedFlush() {
+        for (int i = 0; i < BATCH; i++) {
+            database.saveMetrics(19.9, 12.5, 20 + i % 7, 40, 3000 + i, 8192);
+        }
+        database.flush();
+    }
+
+    /**
+     * 改造前 saveMetrics 的写入方式: 每条采样准备一次语句并单独提交
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void perRowAutocommit() throws SQLException {
+        String sql = "INSERT INTO metrics(timestamp, tps, mspt, cpu_process, cpu_system, memory_used, memory_max) VALUES(?,?,?,?,?,?,?)";
+        for (int i = 0; i < BATCH; i++) {
+            try (PreparedStatement pstmt = legacy.prepareStatement(sql)) {
+                pstmt.setLong(1, timestamp += 3000);
+                pstmt.setDouble(2, 19.9);
+                pstmt.setDouble(3, 12.5);
+                pstmt.setDouble(4, 20 + i % 7);
+                pstmt.setDouble(5, 40);
+                pstmt.setDouble(6, 3000 + i);
+                pstmt.setDouble(7, 8192);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+}
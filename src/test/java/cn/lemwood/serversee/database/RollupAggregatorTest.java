@@ -0,0 +1,78 @@
+package cn.lemwood.serversee.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RollupAggregatorTest {
+    private static final long START = 1_700_000_000_000L - Math.floorMod(1_700_000_000_000L, 3_600_000L);
+
+    private static MetricsSample sample(int i) {
+        return new MetricsSample(START + i * 10_000L, 20 - (i % 5) * 0.1, 10 + (i % 13), 20 + (i % 7), 30, 2048 + i, 8192);
+    }
+
+    private static List<RollupRow> feed(RollupAggregator aggregator, int from, int to) {
+        List<RollupRow> rows = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            rows.addAll(aggregator.add(sample(i)));
+        }
+        return rows;
+    }
+
+    private static void assertSameRows(List<RollupRow> expected, List<RollupRow> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            RollupRow e = expected.get(i);
+            RollupRow a = actual.get(i);
+            assertEquals(e.tier, a.tier);
+            assertEquals(e.bucket, a.bucket);
+            assertEquals(e.samples, a.samples);
+            assertArrayEquals(e.min, a.min);
+            assertArrayEquals(e.max, a.max);
+            assertArrayEquals(e.avg, a.avg);
+            assertArrayEquals(e.p95, a.p95);
+        }
+    }
+
+    @Test
+    void completesBucketsWhenCrossingBoundaries() {
+        RollupAggregator aggregator = new RollupAggregator();
+        // 每 10 秒一条，第 6 条进入下一分钟
+        List<RollupRow> rows = feed(aggregator, 0, 7);
+        assertEquals(1, rows.size());
+        assertEquals(RollupTier.MINUTE, rows.get(0).tier);
+        assertEquals(START, rows.get(0).bucket);
+        assertEquals(6, rows.get(0).samples);
+    }
+
+    @Test
+    void rollbackRestoresStateBeforeFailedWrite() {
+        RollupAggregator reference = new RollupAggregator();
+        RollupAggregator aggregator = new RollupAggregator();
+        feed(reference, 0, 100);
+        feed(aggregator, 0, 100);
+
+        // 一次失败的写入: 跨越多个桶 (含 15 分钟桶)，并触发桶内数组扩容
+        RollupAggregator.Checkpoint checkpoint = aggregator.checkpoint();
+        feed(aggregator, 100, 300);
+        aggregator.drainOpen();
+        aggregator.rollback(checkpoint);
+
+        // 重试同一批采样，结果应与从未失败时一致
+        assertSameRows(feed(reference, 100, 400), feed(aggregator, 100, 400));
+        assertSameRows(reference.drainOpen(), aggregator.drainOpen());
+    }
+
+    @Test
+    void rollbackOfEmptyAggregator() {
+        RollupAggregator aggregator = new RollupAggregator();
+        RollupAggregator.Checkpoint checkpoint = aggregator.checkpoint();
+        feed(aggregator, 0, 50);
+        aggregator.rollback(checkpoint);
+        assertEquals(0, aggregator.drainOpen().size());
+    }
+}
@@ -0,0 +1,105 @@
+package cn.lemwood.serversee.metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主线程每 tick 更新 TPS/MSPT 窗口的开销，对比原先基于 LinkedList&lt;Long&gt; 的实现。
+ * 窗口预先填满，测量的是稳定运行时的单 tick 开销；加上 -prof gc 可以看到每 tick 的分配量。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickMonitorBenchmark {
+    private TickMonitor monitor;
+    private LinkedListMonitor legacy;
+
+    @Setup
+    public void setup() {
+        monitor = new TickMonitor();
+        legacy = new LinkedListMonitor();
+        // 填满 15 分钟直方图与 1 分钟窗口
+        for (int i = 0; i < 20000; i++) {
+            monitor.run();
+            legacy.run();
+        }
+    }
+
+    @Benchmark
+    public double ringWindow() {
+        monitor.run();
+        return monitor.getMspt() + monitor.getTps5s() + monitor.getTps1m();
+    }
+
+    @Benchmark
+    public double linkedListWindow() {
+        legacy.run();
+        return legacy.mspt + legacy.tps5s + legacy.tps1m;
+    }
+
+    /**
+     * 改造前 TickMonitor 的窗口维护与计算方式
+     */
+    static final class LinkedListMonitor {
+        private static final int WINDOW_SIZE_5S = 100;
+        private static final int WINDOW_SIZE_1M = 1200;
+
+        private final LinkedList<Long> tickDurations = new LinkedList<>();
+        private final LinkedList<Long> tickTimestamps = new LinkedList<>();
+        private long lastTickTime = 0;
+        double tps5s = 20.0;
+        double tps1m = 20.0;
+        double mspt = 0.0;
+
+        void run() {
+            long now = System.nanoTime();
+            if (lastTickTime != 0) {
+                tickDurations.addLast(now - lastTickTime);
+                tickTimestamps.addLast(now);
+                while (tickDurations.size() > WINDOW_SIZE_1M) {
+                    tickDurations.removeFirst();
+                    tickTimestamps.removeFirst();
+                }
+                update();
+            }
+            lastTickTime = now;
+        }
+
+        private void update() {
+            double totalDurationMs = 0;
+            for (Long d : tickDurations) {
+                totalDurationMs += d / 1_000_000.0;
+            }
+            mspt = totalDurationMs / tickDurations.size();
+
+            int size5s = Math.min(tickDurations.size(), WINDOW_SIZE_5S);
+            if (size5s > 1) {
+                long timeEnd = tickTimestamps.get(tickTimestamps.size() - 1);
+                long timeStart = tickTimestamps.get(tickTimestamps.size() - size5s);
+                double seconds = (timeEnd - timeStart) / 1_000_000_000.0;
+                if (seconds > 0) tps5s = Math.min(20.0, (size5s - 1) / seconds);
+            }
+            int size1m = tickDurations.size();
+            if (size1m > 1) {
+                long timeEnd = tickTimestamps.get(tickTimestamps.size() - 1);
+                long timeStart = tickTimestamps.get(0);
+                double seconds = (timeEnd - timeStart) / 1_000_000_000.0;
+                if (seconds > 0) tps1m = Math.min(20.0, (size1m - 1) / seconds);
+            }
+        }
+    }
+}